@@ -0,0 +1,130 @@
+package bguspl.set;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that hands the records over to a background thread, which writes them to another handler. Logging
+ * never waits for the disk (e.g. on the Swing event dispatch thread); if the writer falls behind by more than the
+ * capacity, new records are dropped (and counted).
+ * Only the writer thread writes to the target: flushing and closing queue a marker behind the records and wait for
+ * the writer to reach it, so the records are written in order.
+ */
+public class AsyncHandler extends Handler {
+
+    /**
+     * Queued by flush and close: the writer flushes the target when it reaches it (and stops, for close).
+     */
+    private static class Marker extends LogRecord {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient CountDownLatch reached = new CountDownLatch(1);
+        private final boolean stop;
+
+        private Marker(boolean stop) {
+            super(Level.OFF, null);
+            this.stop = stop;
+        }
+    }
+
+    private final Handler target;
+    private final BlockingQueue<LogRecord> records;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    /**
+     * @param target   - the handler to write the records to.
+     * @param capacity - the maximum number of records waiting to be written.
+     */
+    public AsyncHandler(Handler target, int capacity) {
+        this.target = target;
+        records = new ArrayBlockingQueue<>(capacity);
+        writer = new Thread(() -> {
+            try {
+                while (true) {
+                    LogRecord record = records.take();
+                    if (record instanceof Marker) {
+                        Marker marker = (Marker) record;
+                        target.flush();
+                        marker.reached.countDown();
+                        if (marker.stop) return;
+                    } else target.publish(record);
+                }
+            } catch (InterruptedException ignored) {}
+        }, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (isLoggable(record) && !records.offer(record))
+            dropped.incrementAndGet();
+    }
+
+    /**
+     * Waits for the writer to write the records published so far, and to flush the target.
+     */
+    @Override
+    public void flush() {
+        handOver(new Marker(false));
+    }
+
+    /**
+     * Waits for the writer to write the records published so far and stop, then closes the target.
+     */
+    @Override
+    public void close() {
+        handOver(new Marker(true));
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        target.close();
+    }
+
+    /**
+     * Queues a marker behind the waiting records and waits for the writer to reach it. If there is no writer (it
+     * stopped, or the caller is the writer itself, e.g. the target logged), writes the records on the calling thread.
+     */
+    private void handOver(Marker marker) {
+        if (Thread.currentThread() != writer && writer.isAlive()) try {
+            records.put(marker);
+            while (!marker.reached.await(100, TimeUnit.MILLISECONDS))
+                if (!writer.isAlive()) break;  // stopped by a concurrent close before reaching the marker
+            if (marker.reached.getCount() == 0) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        for (LogRecord record = records.poll(); record != null; record = records.poll())
+            if (!(record instanceof Marker)) target.publish(record);
+        target.flush();
+    }
+
+    /**
+     * The target formats the records, so its formatter is the one set.
+     */
+    @Override
+    public synchronized void setFormatter(Formatter formatter) {
+        super.setFormatter(formatter);
+        target.setFormatter(formatter);
+    }
+
+    /**
+     * @return - the number of records dropped because the writer fell behind.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+}
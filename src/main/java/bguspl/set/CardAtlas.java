@@ -0,0 +1,82 @@
+package bguspl.set;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+
+/**
+ * All card faces packed into a single image, each scaled to the cell size, so drawing a card is a blit of a
+ * sub-rectangle of one accelerated image instead of a draw of its own image.
+ * Faces are added as their images become available. Used on the event dispatch thread only.
+ */
+class CardAtlas {
+
+    /**
+     * The largest atlas (in pixels) that will be allocated.
+     */
+    private static final long MAX_PIXELS = 1L << 25;
+
+    private final BufferedImage atlas;
+    private final BitSet packed;
+    private final int faceWidth;
+    private final int faceHeight;
+    private final int columns;
+
+    /**
+     * @param faces      - the number of card faces (indices 0 to faces - 1).
+     * @param faceWidth  - the width of a face (in pixels).
+     * @param faceHeight - the height of a face (in pixels).
+     * @param gc         - the configuration of the screen the atlas is drawn on.
+     * @throws IllegalArgumentException - if the atlas would be too large.
+     */
+    CardAtlas(int faces, int faceWidth, int faceHeight, GraphicsConfiguration gc) {
+        if ((long) faces * faceWidth * faceHeight > MAX_PIXELS)
+            throw new IllegalArgumentException("card atlas of " + faces + " faces is too large");
+
+        this.faceWidth = faceWidth;
+        this.faceHeight = faceHeight;
+        columns = (int) Math.ceil(Math.sqrt(faces));
+        int rows = (faces + columns - 1) / columns;
+        atlas = gc.createCompatibleImage(columns * faceWidth, rows * faceHeight, Transparency.TRANSLUCENT);
+        packed = new BitSet(faces);
+    }
+
+    /**
+     * @param face - the face index.
+     * @return - true iff the face was added to the atlas.
+     */
+    boolean contains(int face) {
+        return packed.get(face);
+    }
+
+    /**
+     * Adds a face to the atlas, scaling it to the face size.
+     *
+     * @param face  - the face index.
+     * @param image - the face image.
+     */
+    void put(int face, Image image) {
+        int x = (face % columns) * faceWidth;
+        int y = (face / columns) * faceHeight;
+        Graphics2D g = atlas.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, x, y, faceWidth, faceHeight, null);
+        g.dispose();
+        packed.set(face);
+    }
+
+    /**
+     * Draws a face.
+     *
+     * @param g    - the graphics to draw on.
+     * @param face - the face index (must be in the atlas).
+     * @param x    - the x coordinate of the top left corner.
+     * @param y    - the y coordinate of the top left corner.
+     */
+    void draw(Graphics g, int face, int x, int y) {
+        int sx = (face % columns) * faceWidth;
+        int sy = (face / columns) * faceHeight;
+        g.drawImage(atlas, x, y, x + faceWidth, y + faceHeight, sx, sy, sx + faceWidth, sy + faceHeight, null);
+    }
+}
@@ -0,0 +1,95 @@
+package bguspl.set;
+
+/**
+ * An immutable table of the data of every card in the deck, computed once from the configuration.
+ *
+ * @inv feature(card, i) == the i-th digit of card in base featureSize (most significant first)
+ */
+public final class CardCatalog {
+
+    /**
+     * The maximum number of features and of choices per feature (one hex digit per feature in the image names).
+     */
+    public static final int MAX_FEATURES = 16;
+
+    /**
+     * The number of features on the cards.
+     */
+    public final int featureCount;
+
+    /**
+     * The number of choices for each feature.
+     */
+    public final int featureSize;
+
+    /**
+     * The total number of cards in the deck.
+     */
+    public final int deckSize;
+
+    /**
+     * The features of all cards, featureCount consecutive values per card.
+     */
+    private final int[] features;
+
+    /**
+     * The image resource of each card.
+     */
+    private final String[] imageNames;
+
+    public CardCatalog(Config config) {
+        this(config.featureCount, config.featureSize);
+    }
+
+    public CardCatalog(int featureCount, int featureSize) {
+        if (featureCount < 1 || featureCount > MAX_FEATURES || featureSize < 1 || featureSize > MAX_FEATURES)
+            throw new IllegalArgumentException("unsupported deck: " + featureCount + " features of " + featureSize + " choices");
+
+        this.featureCount = featureCount;
+        this.featureSize = featureSize;
+        deckSize = (int) Math.pow(featureSize, featureCount);
+
+        features = new int[deckSize * featureCount];
+        imageNames = new String[deckSize];
+        char[] digits = new char[featureCount];
+        for (int card = 0; card < deckSize; ++card) {
+            int value = card;
+            for (int i = featureCount - 1; i >= 0; --i) {
+                features[card * featureCount + i] = value % featureSize;
+                value /= featureSize;
+            }
+
+            for (int i = 0; i < featureCount; ++i)
+                digits[i] = Character.forDigit(features[card * featureCount + i], MAX_FEATURES);
+            imageNames[card] = "cards/" + new String(digits) + ".png";
+        }
+    }
+
+    /**
+     * @param card    - the card id.
+     * @param feature - the feature index (between 0 and featureCount - 1).
+     * @return - the value of the feature on the card (between 0 and featureSize - 1).
+     */
+    public int feature(int card, int feature) {
+        return features[card * featureCount + feature];
+    }
+
+    /**
+     * Copies the features of a card into an array.
+     *
+     * @param card   - the card id.
+     * @param dest   - the array to copy to.
+     * @param offset - the index in dest of the first feature.
+     */
+    public void copyFeatures(int card, int[] dest, int offset) {
+        System.arraycopy(features, card * featureCount, dest, offset, featureCount);
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the name of the image resource of the card (e.g. "cards/1021.png").
+     */
+    public String imageName(int card) {
+        return imageNames[card];
+    }
+}
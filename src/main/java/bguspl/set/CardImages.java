@@ -0,0 +1,191 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * Decodes the card images on a background pool and caches them (the cache is shared by all instances).
+ * Small decks are decoded in advance, large decks are decoded on demand, when a card is first requested.
+ */
+class CardImages {
+
+    /**
+     * Decks up to this size are decoded in advance.
+     */
+    private static final int PREFETCH_LIMIT = 256;
+
+    /**
+     * The decoded images by resource name.
+     */
+    private static final ConcurrentHashMap<String, Decoding> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The pool the images are decoded on.
+     */
+    private static final ExecutorService pool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), new ThreadFactory("card-images-"));
+
+    private final Logger logger;
+    private final CardCatalog catalog;
+    private final Runnable onDecoded;
+
+    /**
+     * The decodings this instance requested, by card id (null until first requested).
+     */
+    private final AtomicReferenceArray<Decoding> tasks;
+
+    /**
+     * @param logger    - the logger to report decoding errors to.
+     * @param catalog   - the cards to load the images of.
+     * @param onDecoded - called (on a pool thread) whenever an image this instance requested is decoded.
+     * @throws IllegalArgumentException - if there is no image resource for some card.
+     */
+    CardImages(Logger logger, CardCatalog catalog, Runnable onDecoded) {
+        this.logger = logger;
+        this.catalog = catalog;
+        this.onDecoded = onDecoded;
+        this.tasks = new AtomicReferenceArray<>(catalog.deckSize);
+
+        for (int card = 0; card < catalog.deckSize; ++card)
+            resource(catalog.imageName(card));
+
+        if (catalog.deckSize <= PREFETCH_LIMIT)
+            for (int card = 0; card < catalog.deckSize; ++card)
+                request(card);
+    }
+
+    /**
+     * Loads an image resource synchronously, without caching it.
+     *
+     * @param filename - the resource name.
+     * @return - the decoded image.
+     */
+    static Image load(String filename) {
+        try {
+            return ImageIO.read(resource(filename));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static URL resource(String filename) {
+        URL imageResource = CardImages.class.getClassLoader().getResource(filename);
+        if (imageResource == null) // e.g. a deck variant with no card images, the game can still run without a ui
+            throw new IllegalArgumentException("missing image resource " + filename, new FileNotFoundException(filename));
+        return imageResource;
+    }
+
+    /**
+     * Starts decoding the image of a card in the background, unless it was already started.
+     *
+     * @param card - the card id.
+     */
+    void request(int card) {
+        task(card).submit();
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the image of the card, or null if it is not decoded yet (decoding is started if it was not).
+     */
+    Image getIfReady(int card) {
+        Decoding task = task(card);
+        if (!task.isDone()) {
+            task.submit();
+            return null;
+        }
+        return get(task, catalog.imageName(card));
+    }
+
+    private Image get(Decoding task, String filename) {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            logger.severe("cannot decode image " + filename + ": " + e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Decoding task(int card) {
+        Decoding task = tasks.get(card);
+        if (task == null) {
+            task = cache.computeIfAbsent(catalog.imageName(card), Decoding::new);
+            if (tasks.compareAndSet(card, null, task))
+                task.listen(onDecoded); // once per instance and card, the decoding may be shared with other instances
+            else
+                task = tasks.get(card);
+        }
+        return task;
+    }
+
+    /**
+     * The decoding of a single image, submitted to the pool at most once.
+     */
+    private static class Decoding extends FutureTask<Image> {
+
+        private final AtomicBoolean submitted = new AtomicBoolean();
+        private final ConcurrentLinkedQueue<Runnable> listeners = new ConcurrentLinkedQueue<>();
+
+        private Decoding(String filename) {
+            super(() -> load(filename));
+        }
+
+        /**
+         * Calls a listener once the image is decoded (not at all if it already is).
+         */
+        private void listen(Runnable listener) {
+            if (isDone()) return; // the caller finds the image ready anyway
+            listeners.add(listener);
+            if (isDone() && listeners.remove(listener)) // done() may have drained the listeners before it was added
+                listener.run();
+        }
+
+        private void submit() {
+            if (!isDone() && submitted.compareAndSet(false, true))
+                pool.execute(this);
+        }
+
+        @Override
+        protected void done() {
+            for (Runnable listener = listeners.poll(); listener != null; listener = listeners.poll())
+                listener.run();
+        }
+    }
+
+    /**
+     * Creates named daemon threads, so decoding never keeps the game from exiting.
+     */
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private ThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package bguspl.set;
+
+/**
+ * The time of the game. The game threads (the dealer, the players and the computer players) read the time and sleep
+ * through the clock, and tell it when they wait for each other, so the time can be simulated (see VirtualClock).
+ */
+public interface Clock {
+
+    /**
+     * The wall clock (the default).
+     */
+    Clock SYSTEM = new SystemClock();
+
+    /**
+     * @return - the current time in milliseconds (as System.currentTimeMillis).
+     */
+    long currentTimeMillis();
+
+    /**
+     * Sleeps (as Thread.sleep).
+     * @param millis - the time to sleep.
+     * @throws InterruptedException if interrupted while sleeping.
+     */
+    void sleep(long millis) throws InterruptedException;
+
+    /**
+     * Gives up the cpu while spinning (waiting for a condition that only changes with time or with other threads).
+     */
+    void yieldTime();
+
+    /**
+     * A game thread is about to start (called before starting it).
+     */
+    void enter();
+
+    /**
+     * The calling game thread ends.
+     */
+    void exit();
+
+    /**
+     * The calling game thread is about to wait for another game thread.
+     */
+    void idle();
+
+    /**
+     * A game thread that waited (see idle) was woken up (called by the waking thread, once per idle).
+     */
+    void busy();
+
+    /**
+     * @param config - the game configuration.
+     * @return - a virtual clock if config.virtualTime, the system clock otherwise.
+     */
+    static Clock create(Config config) {
+        return config.virtualTime ? new VirtualClock() : SYSTEM;
+    }
+}
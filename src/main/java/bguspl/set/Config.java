@@ -36,6 +36,11 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The features and image names of all the cards in the deck
+     */
+    public final CardCatalog catalog;
+
     /**
      * The number of human players in the game.
      */
@@ -86,12 +91,65 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * How the dealer chooses the cards to place on the table (Random, or SetGuaranteeing to always leave a set on
+     * the table when the deck allows it)
+     */
+    public final String dealStrategy;
+
+    /**
+     * Whether the dealer replaces only the fewest cards that make a new set on turn timeout (keeping the tokens on the
+     * other cards), rather than all the cards on the table
+     */
+    public final boolean partialReshuffle;
+
+    /**
+     * The number of keys per second a computer player presses (0 for as fast as it can)
+     */
+    public final double botKeysPerSecond;
+
+    /**
+     * The probability that a computer player goes for a legal set on the table, rather than random slots
+     */
+    public final double botAccuracy;
+
+    /**
+     * The number of milliseconds it takes a computer player to spot a legal set on the table
+     */
+    public final long botReactionMillis;
+
+    /**
+     * Whether the game runs on simulated time, which jumps ahead whenever all the game threads are idle (for fast
+     * simulations of computer players; see VirtualClock)
+     */
+    public final boolean virtualTime;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
      */
     public final String[] playerNames;
 
+    /**
+     * The port of the game server for remote players (0 for no server)
+     */
+    public final int serverPort;
+
+    /**
+     * The port of the spectator channel (0 for no channel)
+     */
+    public final int spectatorPort;
+
+    /**
+     * The number of ui events each user interface (e.g. the screen, the game server) can fall behind by
+     */
+    public final int uiQueueCapacity;
+
+    /**
+     * The number of milliseconds between snapshots of the game metrics in the log (0 for no snapshots)
+     */
+    public final long metricsDumpMillis;
+
     /**
      * The number of rows in the grid of cards on the table (and on the screen)
      */
@@ -132,6 +190,11 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * Whether to draw the cards from a single packed image of all card faces (through an accelerated back buffer)
+     */
+    public final boolean cardAtlas;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -197,6 +260,7 @@ public class Config {
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        catalog = new CardCatalog(featureCount, featureSize);
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
@@ -210,6 +274,17 @@ public class Config {
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        dealStrategy = properties.getProperty("DealStrategy", "Random").trim();
+        partialReshuffle = Boolean.parseBoolean(properties.getProperty("PartialReshuffle", "False"));
+        botKeysPerSecond = Double.parseDouble(properties.getProperty("BotKeysPerSecond", "0"));
+        botAccuracy = Double.parseDouble(properties.getProperty("BotAccuracy", "0"));
+        botReactionMillis = (long) (Double.parseDouble(properties.getProperty("BotReactionSeconds", "0")) * 1000.0);
+        virtualTime = Boolean.parseBoolean(properties.getProperty("VirtualTime", "False"));
+
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "0"));
+        spectatorPort = Integer.parseInt(properties.getProperty("SpectatorPort", "0"));
+        uiQueueCapacity = Integer.parseInt(properties.getProperty("UiQueueCapacity", "1024"));
+        metricsDumpMillis = (long) (Double.parseDouble(properties.getProperty("MetricsDumpSeconds", "0")) * 1000.0);
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +299,7 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        cardAtlas = Boolean.parseBoolean(properties.getProperty("CardAtlas", "False"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -8,11 +8,23 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final GameMetrics metrics;
+    public final Clock clock;
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
+        this(logger, config, ui, util, new GameMetrics(config.players));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameMetrics metrics) {
+        this(logger, config, ui, util, metrics, Clock.create(config));
+    }
+
+    public Env(Logger logger, Config config, UserInterface ui, Util util, GameMetrics metrics, Clock clock) {
         this.logger = logger;
         this.config = config;
         this.ui = ui;
         this.util = util;
+        this.metrics = metrics;
+        this.clock = clock;
     }
 }
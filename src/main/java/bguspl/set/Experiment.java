@@ -0,0 +1,249 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An experiment runner: plays many headless games of computer players for every point of a grid of game settings,
+ * on all cores at once, and reports how the settings affect the games.
+ *
+ * The grid is a properties file of game settings (as in config.properties) on top of the default config.properties.
+ * A setting with several values separated by ';' (e.g. PenaltyFreezeSeconds=1;3;5) is a dimension of the grid, and
+ * every combination of values is a point. The experiment settings are:
+ *   Games      - the number of games to play at every point (default 10).
+ *   Threads    - the number of games to play at the same time (default the number of cores).
+ *   MaxSeconds - the real time a game may take before it is terminated (default 60).
+ * Games run on virtual time (VirtualTime=True, see VirtualClock) unless the grid says otherwise, so a game takes far
+ * less than its game time.
+ * For every point, the mean game length, sets per minute, reshuffles and score spread (the best score minus the worst)
+ * of the games that finished are printed and written to a csv file. Games that timed out are only counted: they were
+ * cut short, so they would skew the means.
+ *
+ * Usage: Experiment [results file] [grid file]
+ */
+public class Experiment {
+
+    /**
+     * Separates the values of a grid dimension.
+     */
+    private static final String VALUE_SEPARATOR = ";";
+
+    private static final long TERMINATION_TIMEOUT_MILLIS = 10000;
+
+    private static final String[] COLUMNS = {"games", "timed_out", "game_seconds", "sets_per_minute", "reshuffles",
+            "score_spread"};
+
+    /**
+     * The results of the games played at a point of the grid.
+     */
+    static class Result {
+
+        final Map<String, String> point;
+        int games;  // finished, the means are over these
+        int timedOut;
+        double gameSeconds;
+        long sets;
+        long reshuffles;
+        long scoreSpread;
+
+        Result(Map<String, String> point) {
+            this.point = point;
+        }
+
+        synchronized void add(double seconds, long sets, long reshuffles, long scoreSpread, boolean timedOut) {
+            if (timedOut) {
+                ++this.timedOut;
+                return;
+            }
+            ++games;
+            gameSeconds += seconds;
+            this.sets += sets;
+            this.reshuffles += reshuffles;
+            this.scoreSpread += scoreSpread;
+        }
+
+        double meanGameSeconds() {
+            return games == 0 ? 0 : gameSeconds / games;
+        }
+
+        double setsPerMinute() {
+            return gameSeconds == 0 ? 0 : sets / (gameSeconds / 60);
+        }
+
+        double meanReshuffles() {
+            return games == 0 ? 0 : (double) reshuffles / games;
+        }
+
+        double meanScoreSpread() {
+            return games == 0 ? 0 : (double) scoreSpread / games;
+        }
+
+        Object[] values() {
+            return new Object[]{games, timedOut, meanGameSeconds(), setsPerMinute(), meanReshuffles(),
+                    meanScoreSpread()};
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            System.out.println("usage: Experiment [results file] [grid file]");
+            return;
+        }
+
+        Logger logger = Logger.getLogger("ExperimentLogger");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+
+        Properties grid = new Properties();
+        try (InputStream is = Files.newInputStream(Paths.get(args[1]))) {
+            grid.load(is);
+        }
+        List<Result> results = run(logger, grid);
+        writeCsv(Paths.get(args[0]), results);
+    }
+
+    /**
+     * Plays the games of every point of a grid.
+     * @param logger - the logger of the games.
+     * @param grid   - the grid (see the class documentation).
+     * @return - the results of every point, in grid order.
+     */
+    static List<Result> run(Logger logger, Properties grid) throws InterruptedException, ExecutionException {
+        Properties settings = LoadTest.defaults();  // read once; every game gets its config from memory
+        settings.setProperty("VirtualTime", "True");
+        settings.putAll(grid);
+        int games = Integer.parseInt(settings.getProperty("Games", "10"));
+        int threads = Integer.parseInt(settings.getProperty("Threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        long maxMillis = (long) (Double.parseDouble(settings.getProperty("MaxSeconds", "60")) * 1000.0);
+
+        List<Result> results = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (Map<String, String> point : points(settings)) {
+                Properties properties = new Properties();
+                properties.putAll(settings);
+                properties.putAll(point);
+                Config config = new Config(logger, properties);  // shared by the games of the point (it is immutable)
+                Result result = new Result(point);
+                results.add(result);
+                for (int game = 0; game < games; game++)
+                    futures.add(pool.submit(() -> playGame(logger, config, maxMillis, result)));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        for (Result result : results)
+            System.out.println(String.format(Locale.ROOT, "%s: %d games%s, %.1fs per game, %.1f sets/min, "
+                            + "%.1f reshuffles, score spread %.1f", result.point, result.games,
+                    result.timedOut > 0 ? " (" + result.timedOut + " more timed out, not counted)" : "", result.meanGameSeconds(),
+                    result.setsPerMinute(), result.meanReshuffles(), result.meanScoreSpread()));
+        return results;
+    }
+
+    /**
+     * @return - every combination of the values of the grid dimensions (ordered by setting name), as setting overrides.
+     */
+    static List<Map<String, String>> points(Properties settings) {
+        List<Map<String, String>> points = new ArrayList<>();
+        points.add(new LinkedHashMap<>());
+        for (String key : new TreeSet<>(settings.stringPropertyNames())) {
+            String value = settings.getProperty(key);
+            if (!value.contains(VALUE_SEPARATOR)) continue;
+            List<Map<String, String>> expanded = new ArrayList<>();
+            for (Map<String, String> point : points)
+                for (String option : value.split(VALUE_SEPARATOR)) {
+                    Map<String, String> next = new LinkedHashMap<>(point);
+                    next.put(key, option.trim());
+                    expanded.add(next);
+                }
+            points = expanded;
+        }
+        return points;
+    }
+
+    /**
+     * Plays a single game to its end (or until it takes too long).
+     */
+    private static void playGame(Logger logger, Config config, long maxMillis, Result result) {
+        GameMetrics metrics = new GameMetrics(config.players);
+        Env env = new Env(logger, config, new UserInterfaceComposite(logger, config), new UtilImpl(config), metrics);
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+        Thread dealerThread = new Thread(dealer, "dealer-" + Thread.currentThread().getName());
+        dealerThread.setDaemon(true);
+        long start = env.clock.currentTimeMillis();
+        dealerThread.start();
+        boolean timedOut = false;
+        try {
+            dealerThread.join(maxMillis);
+            if (dealerThread.isAlive()) {
+                timedOut = true;
+                dealer.terminate();
+                dealerThread.join(TERMINATION_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        int best = Integer.MIN_VALUE, worst = Integer.MAX_VALUE;
+        for (Player player : players) {
+            best = Math.max(best, player.score());
+            worst = Math.min(worst, player.score());
+        }
+        result.add((env.clock.currentTimeMillis() - start) / 1000.0, metrics.getAcceptedClaims(),
+                metrics.getReshuffles(), players.length == 0 ? 0 : best - worst, timedOut);
+    }
+
+    private static void writeCsv(Path path, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            List<String> keys = results.isEmpty() ? new ArrayList<>() : new ArrayList<>(results.get(0).point.keySet());
+            List<String> header = new ArrayList<>(keys);
+            for (String column : COLUMNS)
+                header.add(column);
+            out.println(String.join(",", header));
+            for (Result result : results) {
+                StringBuilder line = new StringBuilder();
+                for (String key : keys)
+                    line.append(result.point.get(key)).append(',');
+                Object[] values = result.values();
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) line.append(',');
+                    line.append(values[i] instanceof Double
+                            ? String.format(Locale.ROOT, "%.3f", (Double) values[i]) : String.valueOf(values[i]));
+                }
+                out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The Java Flight Recorder events of the game (see e.g. jcmd JFR.start). They are recorded alongside the JVM's own
+ * events (gc, monitor contention etc.), so dealer latency can be traced to its causes.
+ * Events are timed as duration events; an event is only committed if it is enabled and took longer than its
+ * threshold. The game only creates an event while its type is enabled (see the is...Enabled checks), so the events
+ * cost nothing, not even an allocation, when not recording.
+ */
+public final class GameEvents {
+
+    private static final EventType CLAIM_CHECKED = EventType.getEventType(ClaimChecked.class);
+    private static final EventType RESHUFFLE = EventType.getEventType(Reshuffle.class);
+    private static final EventType CARD_PLACED = EventType.getEventType(CardPlaced.class);
+    private static final EventType CARD_REMOVED = EventType.getEventType(CardRemoved.class);
+    private static final EventType PLAYER_FROZEN = EventType.getEventType(PlayerFrozen.class);
+    private static final EventType SET_SEARCH = EventType.getEventType(SetSearch.class);
+
+    private GameEvents() {}
+
+    /**
+     * @return - true iff ClaimChecked events are being recorded. The dealer only creates them then, so checking a
+     *           claim allocates nothing when not recording.
+     */
+    public static boolean isClaimCheckedEnabled() {
+        return CLAIM_CHECKED.isEnabled();
+    }
+
+    /**
+     * @return - true iff Reshuffle events are being recorded.
+     */
+    public static boolean isReshuffleEnabled() {
+        return RESHUFFLE.isEnabled();
+    }
+
+    /**
+     * @return - true iff CardPlaced events are being recorded.
+     */
+    public static boolean isCardPlacedEnabled() {
+        return CARD_PLACED.isEnabled();
+    }
+
+    /**
+     * @return - true iff CardRemoved events are being recorded.
+     */
+    public static boolean isCardRemovedEnabled() {
+        return CARD_REMOVED.isEnabled();
+    }
+
+    /**
+     * @return - true iff PlayerFrozen events are being recorded.
+     */
+    public static boolean isPlayerFrozenEnabled() {
+        return PLAYER_FROZEN.isEnabled();
+    }
+
+    /**
+     * @return - true iff SetSearch events are being recorded.
+     */
+    public static boolean isSetSearchEnabled() {
+        return SET_SEARCH.isEnabled();
+    }
+
+    @Name("bguspl.set.ClaimChecked")
+    @Label("Claim Checked")
+    @Category({"Set Game", "Dealer"})
+    @Description("The dealer checked a set claimed by a player")
+    @StackTrace(false)
+    public static class ClaimChecked extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Verdict")
+        @Description("LEGAL, ILLEGAL, or NONE if a card of the set was removed before it was checked")
+        public String verdict;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Category({"Set Game", "Dealer"})
+    @Description("The dealer replaced the cards on the table on turn timeout (all of them, or the fewest that make a set)")
+    @StackTrace(false)
+    public static class Reshuffle extends Event {
+        @Label("Deck Size")
+        @Description("The number of cards left in the deck after dealing")
+        public int deckSize;
+    }
+
+    @Name("bguspl.set.CardPlaced")
+    @Label("Card Placed")
+    @Category({"Set Game", "Table"})
+    @StackTrace(false)
+    public static class CardPlaced extends Event {
+        @Label("Card")
+        public int card;
+
+        @Label("Slot")
+        public int slot;
+    }
+
+    @Name("bguspl.set.CardRemoved")
+    @Label("Card Removed")
+    @Category({"Set Game", "Table"})
+    @StackTrace(false)
+    public static class CardRemoved extends Event {
+        @Label("Card")
+        public int card;
+
+        @Label("Slot")
+        public int slot;
+    }
+
+    @Name("bguspl.set.PlayerFrozen")
+    @Label("Player Frozen")
+    @Category({"Set Game", "Player"})
+    @Description("A player was frozen, after a point or a penalty")
+    @StackTrace(false)
+    public static class PlayerFrozen extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Requested Millis")
+        @Description("The time the player was supposed to be frozen for")
+        public long requestedMillis;
+    }
+
+    @Name("bguspl.set.SetSearch")
+    @Label("Set Search")
+    @Category({"Set Game", "Util"})
+    @Description("A search of a deck for sets")
+    @Threshold("1 ms")
+    public static class SetSearch extends Event {
+        @Label("Deck Size")
+        public int deckSize;
+
+        @Label("Sets Found")
+        public int found;
+    }
+}
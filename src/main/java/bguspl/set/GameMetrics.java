@@ -0,0 +1,367 @@
+package bguspl.set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Counters and timings of the game engine internals, exposed through JMX and dumped to the log periodically.
+ * Recording is lock free (and cheap enough for the game threads); the queue depths are read live, when asked for.
+ */
+public class GameMetrics implements GameMetricsMBean {
+
+    /**
+     * The name the metrics are registered under in the platform MBean server.
+     */
+    public static final String OBJECT_NAME = "bguspl.set:type=GameMetrics";
+
+    /**
+     * A count, total and maximum of a measured duration.
+     */
+    private static class Timing {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+        }
+
+        double meanMicros() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+        }
+
+        long maxMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+        }
+    }
+
+    private final LongAdder claims = new LongAdder();
+    private final LongAdder actions = new LongAdder();
+    private final LatencyHistogram claimLatency = new LatencyHistogram();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reshuffles = new LongAdder();
+    private final LongAdder[] freezeMillis;
+    private final Timing dealerLoop = new Timing();
+    private final Timing setSearch = new Timing();
+    private final Timing tableLockWait = new Timing();
+
+    private volatile IntSupplier claimQueue = () -> 0;
+    private final IntSupplier[] actionQueues;
+
+    private volatile long startNanos = System.nanoTime();
+
+    /**
+     * The claims per second over the last snapshot interval (NaN before the first interval is over).
+     */
+    private volatile double claimsPerSecond = Double.NaN;
+    private long lastSampleClaims;
+    private long lastSampleNanos;
+
+    private ThreadLogger dumpThread;
+
+    /**
+     * @param players - the number of players.
+     */
+    public GameMetrics(int players) {
+        freezeMillis = new LongAdder[players];
+        Arrays.setAll(freezeMillis, i -> new LongAdder());
+        actionQueues = new IntSupplier[players];
+        Arrays.fill(actionQueues, (IntSupplier) () -> 0);
+    }
+
+    /**
+     * @param depth - reads the number of claims waiting for the dealer.
+     */
+    public void watchClaimQueue(IntSupplier depth) {
+        claimQueue = depth;
+    }
+
+    /**
+     * @param player - the player id.
+     * @param depth  - reads the number of key presses waiting for the player.
+     */
+    public void watchActionQueue(int player, IntSupplier depth) {
+        actionQueues[player] = depth;
+    }
+
+    /**
+     * A player claimed a set.
+     */
+    public void claimed() {
+        claims.increment();
+    }
+
+    /**
+     * A player took a key press.
+     */
+    public void action() {
+        actions.increment();
+    }
+
+    /**
+     * @param nanos - the time from a player claiming a set until the dealer's verdict.
+     */
+    public void claimLatency(long nanos) {
+        claimLatency.record(nanos);
+    }
+
+    /**
+     * @return - the histogram of the times from claims to verdicts.
+     */
+    public LatencyHistogram claimLatency() {
+        return claimLatency;
+    }
+
+    /**
+     * The dealer checked a claimed set.
+     * @param legal - true iff the set was legal.
+     */
+    public void claimChecked(boolean legal) {
+        (legal ? accepted : rejected).increment();
+    }
+
+    /**
+     * The dealer reshuffled the table.
+     */
+    public void reshuffled() {
+        reshuffles.increment();
+    }
+
+    /**
+     * @param player - the player id.
+     * @param millis - the time the player was frozen for.
+     */
+    public void frozen(int player, long millis) {
+        freezeMillis[player].add(millis);
+    }
+
+    /**
+     * @param nanos - the time an iteration of the dealer loop took (not counting its sleep).
+     */
+    public void dealerLoop(long nanos) {
+        dealerLoop.record(nanos);
+    }
+
+    /**
+     * @param nanos - the time a search for sets took.
+     */
+    public void setSearch(long nanos) {
+        setSearch.record(nanos);
+    }
+
+    /**
+     * @param nanos - the time a thread waited to acquire the table monitor.
+     */
+    public void tableLockWait(long nanos) {
+        tableLockWait.record(nanos);
+    }
+
+    @Override
+    public int getClaimQueueDepth() {
+        return claimQueue.getAsInt();
+    }
+
+    @Override
+    public int[] getActionQueueDepths() {
+        int[] depths = new int[actionQueues.length];
+        Arrays.setAll(depths, i -> actionQueues[i].getAsInt());
+        return depths;
+    }
+
+    @Override
+    public long getClaims() {
+        return claims.sum();
+    }
+
+    @Override
+    public double getClaimsPerSecond() {
+        double rate = claimsPerSecond;
+        if (!Double.isNaN(rate)) return rate;
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? claims.sum() / seconds : 0;
+    }
+
+    @Override
+    public long getActions() {
+        return actions.sum();
+    }
+
+    @Override
+    public long getAcceptedClaims() {
+        return accepted.sum();
+    }
+
+    @Override
+    public long getRejectedClaims() {
+        return rejected.sum();
+    }
+
+    @Override
+    public double getAcceptedRatio() {
+        long legal = accepted.sum();
+        long checked = legal + rejected.sum();
+        return checked == 0 ? 0 : (double) legal / checked;
+    }
+
+    @Override
+    public long getClaimLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(claimLatency.percentile(50));
+    }
+
+    @Override
+    public long getClaimLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(claimLatency.percentile(99));
+    }
+
+    @Override
+    public long getReshuffles() {
+        return reshuffles.sum();
+    }
+
+    @Override
+    public long[] getFreezeMillis() {
+        long[] millis = new long[freezeMillis.length];
+        Arrays.setAll(millis, i -> freezeMillis[i].sum());
+        return millis;
+    }
+
+    @Override
+    public double getDealerLoopMeanMicros() {
+        return dealerLoop.meanMicros();
+    }
+
+    @Override
+    public long getDealerLoopMaxMicros() {
+        return dealerLoop.maxMicros();
+    }
+
+    @Override
+    public double getSetSearchMeanMicros() {
+        return setSearch.meanMicros();
+    }
+
+    @Override
+    public long getSetSearchMaxMicros() {
+        return setSearch.maxMicros();
+    }
+
+    @Override
+    public double getTableLockWaitMeanMicros() {
+        return tableLockWait.meanMicros();
+    }
+
+    @Override
+    public long getTableLockWaitMaxMicros() {
+        return tableLockWait.maxMicros();
+    }
+
+    @Override
+    public synchronized void reset() {
+        claims.reset();
+        actions.reset();
+        claimLatency.reset();
+        accepted.reset();
+        rejected.reset();
+        reshuffles.reset();
+        for (LongAdder millis : freezeMillis)
+            millis.reset();
+        dealerLoop.reset();
+        setSearch.reset();
+        tableLockWait.reset();
+        startNanos = System.nanoTime();
+        claimsPerSecond = Double.NaN;
+        lastSampleClaims = 0;
+        lastSampleNanos = 0;
+    }
+
+    /**
+     * Updates the claims per second over the interval since the previous sample.
+     */
+    private synchronized void sample() {
+        long now = System.nanoTime();
+        long total = claims.sum();
+        if (lastSampleNanos != 0)
+            claimsPerSecond = (total - lastSampleClaims) / ((now - lastSampleNanos) / 1e9);
+        lastSampleClaims = total;
+        lastSampleNanos = now;
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server (so they can be watched with e.g. jconsole).
+     * @param logger - the logger (for registration errors).
+     */
+    public void register(Logger logger) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            logger.severe("cannot register the game metrics: " + e);
+        }
+    }
+
+    /**
+     * Starts a daemon thread that logs a snapshot of the metrics periodically.
+     * @param logger         - the logger.
+     * @param intervalMillis - the time between snapshots.
+     */
+    public synchronized void startDump(Logger logger, long intervalMillis) {
+        if (dumpThread != null) return;
+        dumpThread = new ThreadLogger(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(intervalMillis);
+                    sample();
+                    logger.severe(toString());
+                }
+            } catch (InterruptedException ignored) {}
+        }, "metrics-dump", logger);
+        dumpThread.setDaemon(true);
+        dumpThread.startWithLog();
+    }
+
+    /**
+     * Stops the snapshot thread (if started).
+     */
+    public synchronized void stopDump() {
+        if (dumpThread != null) dumpThread.interrupt();
+        dumpThread = null;
+    }
+
+    /**
+     * @return - a snapshot of all the metrics, in a single line.
+     */
+    @Override
+    public String toString() {
+        return String.format("metrics: claim queue %d, action queues %s, claims %d (%.1f/s), accepted %d, "
+                        + "rejected %d (%.0f%% accepted), claim latency p50 %dus p99 %dus, actions %d, reshuffles %d, "
+                        + "freeze ms %s, dealer loop %.1fus (max %dus), set search %.1fus (max %dus), "
+                        + "table lock wait %.1fus (max %dus)",
+                getClaimQueueDepth(), Arrays.toString(getActionQueueDepths()), getClaims(), getClaimsPerSecond(),
+                getAcceptedClaims(), getRejectedClaims(), 100 * getAcceptedRatio(), getClaimLatencyP50Micros(),
+                getClaimLatencyP99Micros(), getActions(), getReshuffles(),
+                Arrays.toString(getFreezeMillis()), getDealerLoopMeanMicros(), getDealerLoopMaxMicros(),
+                getSetSearchMeanMicros(), getSetSearchMaxMicros(), getTableLockWaitMeanMicros(),
+                getTableLockWaitMaxMicros());
+    }
+}
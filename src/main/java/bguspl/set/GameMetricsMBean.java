@@ -0,0 +1,80 @@
+package bguspl.set;
+
+/**
+ * The game metrics, as exposed through JMX (see GameMetrics).
+ * Times are in microseconds unless stated otherwise.
+ */
+public interface GameMetricsMBean {
+
+    /**
+     * @return - the number of claimed sets waiting for the dealer to check them.
+     */
+    int getClaimQueueDepth();
+
+    /**
+     * @return - the number of key presses waiting for each player to handle them.
+     */
+    int[] getActionQueueDepths();
+
+    /**
+     * @return - the total number of sets claimed by players.
+     */
+    long getClaims();
+
+    /**
+     * @return - the number of claims per second (over the last snapshot interval, or since the start if there are no
+     *           snapshots).
+     */
+    double getClaimsPerSecond();
+
+    /**
+     * @return - the total number of key presses the players took (i.e. that were not ignored).
+     */
+    long getActions();
+
+    long getAcceptedClaims();
+
+    long getRejectedClaims();
+
+    /**
+     * @return - the fraction of the checked claims that were legal sets (0 if none were checked).
+     */
+    double getAcceptedRatio();
+
+    /**
+     * @return - the median time from a player claiming a set until the dealer's verdict.
+     */
+    long getClaimLatencyP50Micros();
+
+    long getClaimLatencyP99Micros();
+
+    /**
+     * @return - the number of times the dealer reshuffled the table.
+     */
+    long getReshuffles();
+
+    /**
+     * @return - the total time (in milliseconds) each player spent frozen.
+     */
+    long[] getFreezeMillis();
+
+    double getDealerLoopMeanMicros();
+
+    long getDealerLoopMaxMicros();
+
+    double getSetSearchMeanMicros();
+
+    long getSetSearchMaxMicros();
+
+    /**
+     * @return - the mean time it took to acquire the table monitor (placing or removing a card or a token).
+     */
+    double getTableLockWaitMeanMicros();
+
+    long getTableLockWaitMaxMicros();
+
+    /**
+     * Clears all the counters and timings (the queue depths are live, and are not affected).
+     */
+    void reset();
+}
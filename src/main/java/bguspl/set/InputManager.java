@@ -43,8 +43,8 @@ class InputManager extends KeyAdapter {
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
         if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
+            logger.severe("key " + keyCode + " was pressed by player " + (player + 1)); // written by the log thread
+            players[player].keyPressed(keyToSlot[keyCode]); // never blocks the event dispatch thread
         }
     }
 }
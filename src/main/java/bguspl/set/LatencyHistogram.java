@@ -0,0 +1,93 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of durations, for percentiles. Durations are counted in log-linear buckets (each power of 2
+ * split into SUB_BUCKETS linear buckets), so a percentile is accurate to within 1 / SUB_BUCKETS of its value, using
+ * a fixed, small amount of memory regardless of the number of recorded durations.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Durations (in nanoseconds) up to 2^63 are counted: the first SUB_BUCKETS buckets are exact, then there are
+     * SUB_BUCKETS buckets per power of 2.
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param nanos - the duration to record (negative durations are recorded as 0).
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    /**
+     * @return - the number of recorded durations.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * @param percentile - the percentile (between 0 and 100).
+     * @return - the duration (in nanoseconds) that the given percent of the recorded durations do not exceed (0 if
+     *           none were recorded).
+     */
+    public long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Adds all the durations recorded by another histogram.
+     * @param other - the other histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.addAndGet(i, other.counts.get(i));
+    }
+
+    /**
+     * Clears all the recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * @return - the largest duration counted in the given bucket.
+     */
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long start = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return start + (1L << shift) - 1;
+    }
+}
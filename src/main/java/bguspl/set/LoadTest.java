@@ -0,0 +1,302 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A load test harness: runs headless games of computer players for a fixed duration and reports their throughput,
+ * claim latency and cpu usage, so builds can be compared.
+ *
+ * Each scenario is a properties file with game settings (as in config.properties, e.g. ComputerPlayers,
+ * BotKeysPerSecond, BotAccuracy, BotReactionSeconds, TableDelaySeconds) on top of the default config.properties,
+ * and the load settings:
+ *   Games   - the number of games to run at the same time (default 1).
+ *   Seconds - the duration of the scenario (default 30). A game that ends earlier is replaced by a new one.
+ * The results of every game, and of every scenario as a whole, are written to [prefix].csv and [prefix].json.
+ *
+ * Usage: LoadTest [results prefix] [scenario file]...
+ * Note: human players never press keys here, so scenarios should use computer players only (HumanPlayers=0 is the
+ * default of the harness).
+ */
+public class LoadTest {
+
+    /**
+     * The longest time to wait for a game to terminate before it is reported as hung.
+     */
+    private static final long TERMINATION_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The time between samples of the cpu time of the game threads.
+     */
+    private static final long CPU_SAMPLE_MILLIS = 100;
+
+    private static final String[] COLUMNS = {"scenario", "game", "seconds", "games_played", "claims", "sets",
+            "rejected", "actions", "sets_per_second", "actions_per_second", "latency_p50_ms", "latency_p90_ms",
+            "latency_p99_ms", "latency_max_ms", "cpu_seconds", "cpu_percent", "reshuffles", "hung"};
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The results of a game slot (all the games that ran in it, one after the other), or of a whole scenario.
+     */
+    static class Result {
+
+        final String scenario;
+        final String game;
+        final double seconds;
+        int gamesPlayed;
+        long claims;
+        long sets;
+        long rejected;
+        long actions;
+        long reshuffles;
+        long cpuNanos;
+        boolean hung;
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Result(String scenario, String game, double seconds) {
+            this.scenario = scenario;
+            this.game = game;
+            this.seconds = seconds;
+        }
+
+        void add(GameMetrics metrics) {
+            claims += metrics.getClaims();
+            sets += metrics.getAcceptedClaims();
+            rejected += metrics.getRejectedClaims();
+            actions += metrics.getActions();
+            reshuffles += metrics.getReshuffles();
+            latency.add(metrics.claimLatency());
+        }
+
+        void add(Result other) {
+            gamesPlayed += other.gamesPlayed;
+            claims += other.claims;
+            sets += other.sets;
+            rejected += other.rejected;
+            actions += other.actions;
+            reshuffles += other.reshuffles;
+            cpuNanos += other.cpuNanos;
+            hung |= other.hung;
+            latency.add(other.latency);
+        }
+
+        Object[] values() {
+            return new Object[]{scenario, game, seconds, gamesPlayed, claims, sets, rejected, actions, sets / seconds,
+                    actions / seconds, millis(latency.percentile(50)), millis(latency.percentile(90)),
+                    millis(latency.percentile(99)), millis(latency.percentile(100)), cpuNanos / 1e9,
+                    100 * cpuNanos / 1e9 / seconds, reshuffles, hung};
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("usage: LoadTest [results prefix] [scenario file]...");
+            return;
+        }
+
+        Logger logger = Logger.getLogger("LoadTestLogger");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+
+        List<Result> results = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            Path file = Paths.get(args[i]);
+            Properties scenario = new Properties();
+            try (InputStream is = Files.newInputStream(file)) {
+                scenario.load(is);
+            }
+            String name = file.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+            results.addAll(runScenario(logger, name, scenario));
+        }
+
+        writeCsv(Paths.get(args[0] + ".csv"), results);
+        writeJson(Paths.get(args[0] + ".json"), results);
+    }
+
+    /**
+     * Runs the games of a scenario at the same time.
+     * @return - the result of every game slot, followed by the result of the whole scenario.
+     */
+    static List<Result> runScenario(Logger logger, String name, Properties scenario) throws InterruptedException {
+        Properties properties = defaults();
+        properties.putAll(scenario);
+        Config config = new Config(logger, properties);
+        int games = Integer.parseInt(properties.getProperty("Games", "1"));
+        long durationMillis = (long) (Double.parseDouble(properties.getProperty("Seconds", "30")) * 1000.0);
+
+        List<Result> results = new ArrayList<>();
+        List<Thread> slots = new ArrayList<>();
+        for (int game = 0; game < games; game++) {
+            Result result = new Result(name, Integer.toString(game + 1), durationMillis / 1000.0);
+            results.add(result);
+            Thread slot = new Thread(() -> runGames(logger, config, name + "-" + result.game, durationMillis, result),
+                    "load-" + name + "-" + result.game);
+            slots.add(slot);
+            slot.start();
+        }
+        for (Thread slot : slots)
+            slot.join();
+
+        Result total = new Result(name, "all", durationMillis / 1000.0);
+        results.forEach(total::add);
+        results.add(total);
+        System.out.println(String.format(Locale.ROOT, "%s: %d games, %.1f sets/s, %.1f actions/s, "
+                        + "claim latency p50 %.1fms p99 %.1fms, cpu %.0f%%%s", name, total.gamesPlayed,
+                total.sets / total.seconds, total.actions / total.seconds, total.latency.percentile(50) / 1e6,
+                total.latency.percentile(99) / 1e6, 100 * total.cpuNanos / 1e9 / total.seconds,
+                total.hung ? " (HUNG)" : ""));
+        return results;
+    }
+
+    /**
+     * @return - the default config.properties, with the defaults of the harness (computer players only, no hints,
+     *           no end of game pause).
+     */
+    static Properties defaults() {
+        Properties properties = new Properties();
+        try (InputStream is = LoadTest.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (is != null) properties.load(is);
+        } catch (IOException ignored) {}
+        properties.setProperty("HumanPlayers", "0");
+        properties.setProperty("ComputerPlayers", "4");
+        properties.setProperty("Hints", "False");
+        properties.setProperty("EndGamePauseSeconds", "0");
+        return properties;
+    }
+
+    /**
+     * Runs games one after the other until the duration is over.
+     */
+    private static void runGames(Logger logger, Config config, String name, long durationMillis, Result result) {
+        long deadline = System.currentTimeMillis() + durationMillis;
+        while (!result.hung && System.currentTimeMillis() < deadline) {
+            try {
+                runGame(logger, config, name + "." + (result.gamesPlayed + 1), deadline, result);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs a single game until it ends or the deadline passes.
+     */
+    private static void runGame(Logger logger, Config config, String name, long deadline, Result result)
+            throws InterruptedException {
+        GameMetrics metrics = new GameMetrics(config.players);
+        Env env = new Env(logger, config, new UserInterfaceComposite(logger, config), new UtilImpl(config), metrics);
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+
+        // the game threads are all created by the dealer thread, so they are all in its group (and daemons)
+        ThreadGroup group = new ThreadGroup(name);
+        Thread dealerThread = new Thread(group, dealer, "dealer-" + name);
+        dealerThread.setDaemon(true);
+        Map<Long, Long> cpu = new HashMap<>();
+
+        dealerThread.start();
+        ++result.gamesPlayed;
+        while (dealerThread.isAlive() && System.currentTimeMillis() < deadline) {
+            sampleCpu(group, cpu);
+            dealerThread.join(Math.max(1, Math.min(CPU_SAMPLE_MILLIS, deadline - System.currentTimeMillis())));
+        }
+        sampleCpu(group, cpu);
+        result.add(metrics); // before terminating, which is not part of the load
+
+        if (dealerThread.isAlive()) {
+            Thread terminator = new Thread(dealer::terminate, "terminate-" + name);
+            terminator.setDaemon(true);
+            terminator.start();
+            dealerThread.join(TERMINATION_TIMEOUT_MILLIS);
+            if (dealerThread.isAlive()) {
+                result.hung = true;
+                System.out.println("game " + name + " did not terminate within "
+                        + TimeUnit.MILLISECONDS.toSeconds(TERMINATION_TIMEOUT_MILLIS) + " seconds");
+            }
+        }
+
+        for (long nanos : cpu.values())
+            result.cpuNanos += nanos;
+    }
+
+    /**
+     * Records the cpu time of every live thread of the game (dead threads keep their last sample).
+     */
+    private static void sampleCpu(ThreadGroup group, Map<Long, Long> cpu) {
+        Thread[] live = new Thread[group.activeCount() + 8];
+        int count = group.enumerate(live);
+        for (int i = 0; i < count; i++) {
+            long nanos = threads.getThreadCpuTime(live[i].getId());
+            if (nanos > 0) cpu.merge(live[i].getId(), nanos, Math::max);
+        }
+    }
+
+    private static void writeCsv(Path path, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println(String.join(",", COLUMNS));
+            for (Result result : results) {
+                Object[] values = result.values();
+                StringBuilder line = new StringBuilder();
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) line.append(',');
+                    line.append(format(values[i]));
+                }
+                out.println(line);
+            }
+        }
+    }
+
+    private static void writeJson(Path path, List<Result> results) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("[");
+            for (int r = 0; r < results.size(); r++) {
+                Object[] values = results.get(r).values();
+                StringBuilder line = new StringBuilder("  {");
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) line.append(", ");
+                    line.append('"').append(COLUMNS[i]).append("\": ");
+                    if (values[i] instanceof String) line.append('"').append(escape((String) values[i])).append('"');
+                    else line.append(format(values[i]));
+                }
+                out.println(line.append(r < results.size() - 1 ? "}," : "}"));
+            }
+            out.println("]");
+        }
+    }
+
+    private static String format(Object value) {
+        return value instanceof Double ? String.format(Locale.ROOT, "%.3f", (Double) value) : String.valueOf(value);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
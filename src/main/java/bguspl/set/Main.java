@@ -3,6 +3,8 @@ package bguspl.set;
 import bguspl.set.ex.Dealer;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
+import bguspl.set.net.GameServer;
+import bguspl.set.net.SpectatorChannel;
 
 import java.io.File;
 import java.io.IOException;
@@ -23,6 +25,11 @@ public class Main {
     private static boolean xButtonPressed = false;
     private static Logger logger;
 
+    /**
+     * The maximum number of log records waiting to be written.
+     */
+    private static final int LOG_QUEUE_CAPACITY = 8192;
+
     public static void xButtonPressed() throws InterruptedException {
         if (logger != null) logger.severe("exit button pressed");
         xButtonPressed = true;
@@ -46,18 +53,38 @@ public class Main {
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
+        UserInterfaceComposite sinks = new UserInterfaceComposite(logger, config);
         try {
-            ui = new UserInterfaceSwing(logger, config, players);
+            UserInterface swing = new UserInterfaceSwing(logger, config, players);
+            sinks.add("swing", swing);
         } catch (UnsupportedOperationException | IllegalArgumentException e) {
             logger.severe("error creating swing user interface: " + e.getMessage());
             logger.severe("will try to run without user interface");
             if (config.humanPlayers > 0)
                 logger.severe("warning: running with human players with no user interface");
         }
+        // every sink blocks when it falls behind: the screen and the remote clients only get the changes, and the
+        // network sinks build their snapshots from the events too, so a dropped event could never be recovered from
+        if (config.serverPort > 0) try {
+            GameServer server = new GameServer(logger, config, players, config.serverPort, null);
+            server.start();
+            sinks.add("server", server);
+        } catch (IOException e) {
+            logger.severe("error starting the game server: " + e.getMessage());
+        }
+        if (config.spectatorPort > 0) try {
+            SpectatorChannel spectators = new SpectatorChannel(logger, config, config.spectatorPort, null);
+            spectators.start();
+            sinks.add("spectators", spectators);
+        } catch (IOException e) {
+            logger.severe("error starting the spectator channel: " + e.getMessage());
+        }
+        UserInterface ui = sinks.size() > 0 ? sinks : null;
         ui = new UserInterfaceDecorator(logger, util, ui);
 
         Env env = new Env(logger, config, ui, util);
+        env.metrics.register(logger);
+        if (config.metricsDumpMillis > 0) env.metrics.startDump(logger, config.metricsDumpMillis);
 
         // create the game entities
         Table table = new Table(env);
@@ -78,6 +105,8 @@ public class Main {
             logger.severe("thanks for playing... it was fun!");
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
+            env.metrics.stopDump();
+            logger.severe(env.metrics.toString());
             if (!xButtonPressed) env.ui.dispose();
             for (Handler h : logger.getHandlers()) h.flush();
         }
@@ -98,7 +127,7 @@ public class Main {
 
         java.util.logging.Logger logger = java.util.logging.Logger.getLogger("SetGameLogger");
         logger.setUseParentHandlers(false);
-        logger.addHandler(handler);
+        logger.addHandler(new AsyncHandler(handler, LOG_QUEUE_CAPACITY)); // so logging does not wait for the disk
         setLoggerLevelAndFormat(logger, Level.ALL, "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
 
         return logger;
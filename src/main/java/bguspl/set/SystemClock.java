@@ -0,0 +1,34 @@
+package bguspl.set;
+
+/**
+ * The wall clock: real time, and real sleeps. The game threads need no tracking.
+ */
+public class SystemClock implements Clock {
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    @Override
+    public void yieldTime() {
+        Thread.yield();
+    }
+
+    @Override
+    public void enter() {}
+
+    @Override
+    public void exit() {}
+
+    @Override
+    public void idle() {}
+
+    @Override
+    public void busy() {}
+}
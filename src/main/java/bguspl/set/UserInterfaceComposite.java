@@ -0,0 +1,263 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches every ui event to several user interfaces (sinks). Each sink has its own bounded queue and its own
+ * thread, so the game threads only enqueue the event and a slow sink stalls them only once its queue is full (and
+ * never stalls the other sinks).
+ * Each sink receives the events in the order they were raised. When the queue of a sink is full, the event is
+ * handled according to the overflow policy of the sink.
+ */
+public class UserInterfaceComposite implements UserInterface {
+
+    /**
+     * What to do with an event when the queue of a sink is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until the sink makes room (the raising game thread stalls).
+         */
+        BLOCK,
+        /**
+         * Drop the event.
+         */
+        DROP_NEWEST,
+        /**
+         * Drop the oldest event in the queue to make room for the event.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Marks the end of the events of a sink (it is never dropped).
+     */
+    private static final Consumer<UserInterface> DISPOSE = UserInterface::dispose;
+
+    private final Logger logger;
+    private final int capacity;
+    private final OverflowPolicy defaultPolicy;
+    private final List<Sink> sinks = new ArrayList<>();
+
+    /**
+     * @param logger        - the logger.
+     * @param capacity      - the size of the event queue of each sink.
+     * @param defaultPolicy - the overflow policy of sinks that are added without one.
+     */
+    public UserInterfaceComposite(Logger logger, int capacity, OverflowPolicy defaultPolicy) {
+        this.logger = logger;
+        this.capacity = capacity;
+        this.defaultPolicy = defaultPolicy;
+    }
+
+    /**
+     * @param logger - the logger.
+     * @param config - the game configuration (queue capacity).
+     * Note: the sinks block by default, since a sink that misses an event is out of sync with the game from then on.
+     */
+    public UserInterfaceComposite(Logger logger, Config config) {
+        this(logger, config.uiQueueCapacity, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Adds a sink with the default overflow policy and starts its thread.
+     * @param name - the sink name (for its thread and for the log).
+     * @param ui   - the user interface of the sink.
+     */
+    public void add(String name, UserInterface ui) {
+        add(name, ui, defaultPolicy);
+    }
+
+    /**
+     * Adds a sink and starts its thread.
+     * @param name   - the sink name (for its thread and for the log).
+     * @param ui     - the user interface of the sink.
+     * @param policy - what to do with events when the queue of the sink is full.
+     * @pre - no event was raised yet.
+     */
+    public void add(String name, UserInterface ui, OverflowPolicy policy) {
+        Sink sink = new Sink(name, ui, policy);
+        sinks.add(sink);
+        sink.thread.startWithLog();
+    }
+
+    /**
+     * @return - the number of sinks.
+     */
+    public int size() {
+        return sinks.size();
+    }
+
+    /**
+     * @return - the total number of events dropped by all sinks so far.
+     */
+    public long dropped() {
+        long dropped = 0;
+        for (Sink sink : sinks)
+            dropped += sink.dropped.get();
+        return dropped;
+    }
+
+    /**
+     * Queues an event for all the sinks.
+     * @param event - the event (shared by all the sinks, so it must not hold any state of its own).
+     */
+    private void dispatch(Consumer<UserInterface> event) {
+        for (Sink sink : sinks)
+            sink.offer(event);
+    }
+
+    /**
+     * A user interface with its own event queue and thread.
+     */
+    private class Sink implements Runnable {
+
+        private final String name;
+        private final UserInterface ui;
+        private final OverflowPolicy policy;
+        private final BlockingQueue<Consumer<UserInterface>> queue = new ArrayBlockingQueue<>(capacity);
+        private final AtomicLong dropped = new AtomicLong();
+        private final ThreadLogger thread;
+
+        private Sink(String name, UserInterface ui, OverflowPolicy policy) {
+            this.name = name;
+            this.ui = ui;
+            this.policy = policy;
+            thread = new ThreadLogger(this, "ui-" + name, logger);
+            thread.setDaemon(true); // the game may end (e.g. the window is closed) without disposing of the sinks
+        }
+
+        private void offer(Consumer<UserInterface> event) {
+            if (queue.offer(event)) return;
+
+            switch (policy) {
+                case BLOCK:
+                    put(event);
+                    break;
+                case DROP_NEWEST:
+                    dropped.incrementAndGet();
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(event)) {
+                        Consumer<UserInterface> oldest = queue.poll();
+                        if (oldest == DISPOSE) { // too late, the sink is being disposed of
+                            queue.offer(DISPOSE);
+                            return;
+                        }
+                        if (oldest != null) dropped.incrementAndGet();
+                    }
+                    break;
+            }
+        }
+
+        private void put(Consumer<UserInterface> event) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(event);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (Consumer<UserInterface> event = queue.take(); ; event = queue.take()) {
+                    try {
+                        event.accept(ui);
+                    } catch (RuntimeException e) {
+                        logger.severe("ui sink " + name + " failed handling an event: " + e);
+                    }
+                    if (event == DISPOSE) break;
+                }
+            } catch (InterruptedException ignored) {
+            } finally {
+                if (dropped.get() > 0)
+                    logger.severe("ui sink " + name + " dropped " + dropped.get() + " events");
+            }
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        dispatch(ui -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        dispatch(ui -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        dispatch(ui -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        dispatch(UserInterface::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        dispatch(ui -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        dispatch(ui -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        dispatch(ui -> ui.setCountdown(millies, warn));
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        dispatch(ui -> ui.setElapsed(millies));
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        dispatch(ui -> ui.setFreeze(player, millies));
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        dispatch(ui -> ui.setScore(player, score));
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        int[] winners = players.clone();
+        dispatch(ui -> ui.announceWinner(winners));
+    }
+
+    /**
+     * Disposes of all the sinks, after they handle all the events queued so far.
+     */
+    @Override
+    public void dispose() {
+        for (Sink sink : sinks)
+            sink.put(DISPOSE);
+        for (Sink sink : sinks) {
+            try {
+                sink.thread.joinWithLog();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
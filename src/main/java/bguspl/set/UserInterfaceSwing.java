@@ -4,10 +4,14 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -22,19 +26,17 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final GamePanel gamePanel;
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
+    private final UpdateQueue updates;
     private final Config config;
 
-    static String intInBaseToPaddedString(int n, int padding, int base) {
-        return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
-    }
-
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
         timerPanel = new TimerPanel();
-        gamePanel = new GamePanel();
+        gamePanel = new GamePanel(logger);
         playersPanel = new PlayersPanel();
         winnerPanel = new WinnerPanel();
+        updates = new UpdateQueue();
 
         setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -102,41 +104,47 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     private class GamePanel extends JLayeredPane {
 
+        private static final int MAX_CACHED_LABELS = 4096;
+
+        private final Logger logger;
         private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
+        private final CardImages deck;
+        private final Image[] scaledDeck;
+        private Image scaledEmptyCard;
+        private CardAtlas atlas;
+        private boolean atlasUnavailable = false;
+        private VolatileImage backBuffer;
+        private final int[][] grid;
+        private final BitSet dirtySlots;
+        private final BitSet[] playerTokens;
         private final JLabel[][] tokenText;
+        private final Map<BitSet, String> tokenLabels = new HashMap<>();
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        private GamePanel(Logger logger) {
 
-        private GamePanel() {
+            this.logger = logger;
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
-            // init deck and load all pictures from png files
+            // init deck and start loading the pictures from png files in the background
             assert config.featureSize < 10; // otherwise there will be naming conflicts
 
             // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            deck = new CardImages(logger, config.catalog, this::repaint);
+            emptyCard = CardImages.load("cards/empty_card.png");
+            scaledDeck = new Image[config.deckSize];
 
-            grid = new Image[config.rows][config.columns];
+            grid = new int[config.rows][config.columns];
+            dirtySlots = new BitSet(config.tableSize);
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            playerTokens = new BitSet[config.tableSize];
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
                     // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
+                    grid[row][column] = -1;
 
                     // init the JLabel selection overlay
+                    playerTokens[row * config.columns + column] = new BitSet(config.players);
                     tokenText[row][column] = new JLabel("");
                     tokenText[row][column].setVerticalAlignment(JLabel.TOP);
                     tokenText[row][column].setHorizontalAlignment(JLabel.CENTER);
@@ -151,64 +159,173 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private void placeCard(int slot, int card) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
+            if (grid[row][column] != card) {
+                grid[row][column] = card;
+                dirtySlots.set(slot);
+                deck.request(card);
+            }
         }
 
         private void removeCard(int slot) {
             int row = slot / config.columns;
             int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
+            if (grid[row][column] != -1) {
+                grid[row][column] = -1;
+                dirtySlots.set(slot);
+            }
         }
 
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * Repaints only the cells whose card changed since the last call.
+         */
+        private void repaintDirtySlots() {
+            for (int slot = dirtySlots.nextSetBit(0); slot >= 0; slot = dirtySlots.nextSetBit(slot + 1))
+                repaint((slot % config.columns) * config.cellWidth, (slot / config.columns) * config.cellHeight,
+                        config.cellWidth, config.cellHeight);
+            dirtySlots.clear();
         }
 
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
+        /**
+         * @param image - a card image.
+         * @return - a copy of the image scaled to the cell size, in a format that is fast to draw on the screen.
+         */
+        private Image scaleToCell(Image image) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            BufferedImage scaled = gc != null
+                    ? gc.createCompatibleImage(config.cellWidth, config.cellHeight, Transparency.TRANSLUCENT)
+                    : new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, config.cellWidth, config.cellHeight, null);
+            g.dispose();
+            return scaled;
         }
 
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * @param card - the card id, or -1 for an empty cell.
+         * @return - the image to draw in the cell, scaled to the cell size (cards that are not decoded yet are drawn
+         *           empty, and repainted once decoded).
+         */
+        private Image cellImage(int card) {
+            if (card >= 0 && scaledDeck[card] == null) {
+                Image image = deck.getIfReady(card);
+                if (image != null) scaledDeck[card] = scaleToCell(image);
             }
+            if (card >= 0 && scaledDeck[card] != null) return scaledDeck[card];
+
+            if (scaledEmptyCard == null) scaledEmptyCard = scaleToCell(emptyCard);
+            return scaledEmptyCard;
         }
 
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        /**
+         * Shows the tokens of the given players in a slot.
+         * @param slot    - the slot number.
+         * @param players - the players that have a token in the slot.
+         */
+        private void setTokens(int slot, BitSet players) {
+            if (playerTokens[slot].equals(players)) return;
+            playerTokens[slot].clear();
+            playerTokens[slot].or(players);
+            tokenText[slot / config.columns][slot % config.columns].setText(tokenLabel(players));
+        }
+
+        /**
+         * @param players - the players that have a token in a slot.
+         * @return - the overlay text of the slot (cached by the set of players).
+         */
+        private String tokenLabel(BitSet players) {
+            String label = tokenLabels.get(players);
+            if (label == null) {
+                StringBuilder text = new StringBuilder();
+                for (int player = players.nextSetBit(0); player >= 0; player = players.nextSetBit(player + 1))
+                    text.append(text.length() == 0 ? "" : ", ").append(config.playerNames[player]);
+                label = text.toString();
+                if (tokenLabels.size() >= MAX_CACHED_LABELS) tokenLabels.clear();
+                tokenLabels.put((BitSet) players.clone(), label);
+            }
+            return label;
+        }
+
+        /**
+         * Creates the atlas of all the card faces (the empty card being the last face), unless it is disabled,
+         * not supported by the screen or too large, in which case the cards are drawn one by one.
+         * @return - true iff the atlas can be used.
+         */
+        private boolean useAtlas() {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            if (!config.cardAtlas || atlasUnavailable || gc == null) return false;
+            if (atlas == null) {
+                try {
+                    atlas = new CardAtlas(config.deckSize + 1, config.cellWidth, config.cellHeight, gc);
+                } catch (IllegalArgumentException e) {
+                    logger.severe("warning: " + e.getMessage() + ", drawing the cards one by one");
+                    atlasUnavailable = true;
+                    return false;
+                }
+            }
+            return true;
         }
 
-        private String generatePlayersTokenText(int row, int column) {
-            String text = "";
-            for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
-                    text = text.concat(config.playerNames[player] + ", ");
+        /**
+         * @param card - the card id, or -1 for an empty cell.
+         * @return - the atlas face to draw in the cell (cards that are not decoded yet are drawn empty, and
+         *           repainted once decoded).
+         */
+        private int cellFace(int card) {
+            if (card >= 0 && !atlas.contains(card)) {
+                Image image = deck.getIfReady(card);
+                if (image != null) atlas.put(card, image);
             }
-            if (text.length() < 2)
-                return "";
-            return text.substring(0, text.length() - 2);
+            if (card >= 0 && atlas.contains(card)) return card;
+
+            if (!atlas.contains(config.deckSize)) atlas.put(config.deckSize, emptyCard);
+            return config.deckSize;
+        }
+
+        /**
+         * Draws the cells in the area being repainted from the atlas into the back buffer, then copies that area of
+         * the back buffer to the screen. The whole back buffer is redrawn if its contents were lost.
+         */
+        private void paintFromAtlas(Graphics g, Rectangle clip) {
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            do {
+                Rectangle area = clip;
+                int state = backBuffer == null ? VolatileImage.IMAGE_INCOMPATIBLE : backBuffer.validate(gc);
+                if (state == VolatileImage.IMAGE_INCOMPATIBLE)
+                    backBuffer = gc.createCompatibleVolatileImage(getWidth(), getHeight(), Transparency.OPAQUE);
+                if (state != VolatileImage.IMAGE_OK)
+                    area = new Rectangle(getSize());
+
+                Graphics2D bg = backBuffer.createGraphics();
+                forEachCell(area, (row, column) -> atlas.draw(bg, cellFace(grid[row][column]),
+                        column * config.cellWidth, row * config.cellHeight));
+                bg.dispose();
+
+                g.drawImage(backBuffer, 0, 0, this);
+            } while (backBuffer.contentsLost());
+        }
+
+        /**
+         * Calls action with the row and column of each cell that intersects the given area.
+         */
+        private void forEachCell(Rectangle area, BiConsumer<Integer, Integer> action) {
+            int firstRow = Math.max(0, area.y / config.cellHeight);
+            int lastRow = Math.min(config.rows - 1, (area.y + area.height - 1) / config.cellHeight);
+            int firstColumn = Math.max(0, area.x / config.cellWidth);
+            int lastColumn = Math.min(config.columns - 1, (area.x + area.width - 1) / config.cellWidth);
+            for (int row = firstRow; row <= lastRow; row++)
+                for (int column = firstColumn; column <= lastColumn; column++)
+                    action.accept(row, column);
         }
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
-            for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+            // draw the card images of the cells in the area being repainted
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = new Rectangle(getSize());
+            if (useAtlas()) paintFromAtlas(g, clip);
+            else forEachCell(clip, (row, column) -> g.drawImage(cellImage(grid[row][column]),
+                    (column * config.cellWidth), (row * config.cellHeight), this));
         }
     }
 
@@ -274,65 +391,250 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
     }
 
+    /**
+     * The ui changes posted by the game threads and not yet applied to the swing components. Changes of the same
+     * value (e.g. a slot's card or tokens, the countdown or a player's score) are coalesced, the last one wins. All
+     * pending changes are applied together, on the event dispatch thread, at most once per frame.
+     */
+    private class UpdateQueue {
+
+        private static final int FRAME_MILLIS = 16; // about 60 frames per second
+
+        private final Timer frameTimer;
+        private boolean frameScheduled = false;
+
+        // pending changes, guarded by this
+        private final int[] cards = new int[config.tableSize];
+        private final BitSet dirtyCards = new BitSet(config.tableSize);
+        private final BitSet[] tokens = new BitSet[config.tableSize];
+        private final BitSet dirtyTokens = new BitSet(config.tableSize);
+        private boolean timerDirty = false;
+        private boolean elapsed;
+        private long timerMillies;
+        private boolean timerWarn;
+        private final long[] freezes = new long[config.players];
+        private final BitSet dirtyFreezes = new BitSet(config.players);
+        private final int[] scores = new int[config.players];
+        private final BitSet dirtyScores = new BitSet(config.players);
+        private int[] winners = null;
+
+        // the changes being applied, owned by the event dispatch thread
+        private final BitSet appliedCards = new BitSet(config.tableSize);
+        private final int[] appliedCardValues = new int[config.tableSize];
+        private final BitSet appliedTokens = new BitSet(config.tableSize);
+        private final BitSet[] appliedTokenValues = new BitSet[config.tableSize];
+        private final BitSet appliedFreezes = new BitSet(config.players);
+        private final long[] appliedFreezeValues = new long[config.players];
+        private final BitSet appliedScores = new BitSet(config.players);
+        private final int[] appliedScoreValues = new int[config.players];
+
+        private UpdateQueue() {
+            frameTimer = new Timer(FRAME_MILLIS, e -> applyPending());
+            frameTimer.setRepeats(false);
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                tokens[slot] = new BitSet(config.players);
+                appliedTokenValues[slot] = new BitSet(config.players);
+            }
+        }
+
+        /**
+         * Makes sure the pending changes will be applied in the next frame.
+         * @pre the caller holds this monitor.
+         */
+        private void scheduleFrame() {
+            if (!frameScheduled) {
+                frameScheduled = true;
+                frameTimer.start();
+            }
+        }
+
+        private synchronized void setCard(int slot, int card) {
+            cards[slot] = card;
+            dirtyCards.set(slot);
+            scheduleFrame();
+        }
+
+        private synchronized void setToken(int player, int slot, boolean placed) {
+            tokens[slot].set(player, placed);
+            dirtyTokens.set(slot);
+            scheduleFrame();
+        }
+
+        private synchronized void clearTokens(int slot) {
+            tokens[slot].clear();
+            dirtyTokens.set(slot);
+            scheduleFrame();
+        }
+
+        private synchronized void clearTokens() {
+            for (BitSet slotTokens : tokens)
+                slotTokens.clear();
+            dirtyTokens.set(0, config.tableSize);
+            scheduleFrame();
+        }
+
+        private synchronized void setTimer(boolean elapsed, long millies, boolean warn) {
+            this.elapsed = elapsed;
+            timerMillies = millies;
+            timerWarn = warn;
+            timerDirty = true;
+            scheduleFrame();
+        }
+
+        private synchronized void setFreeze(int player, long millies) {
+            freezes[player] = millies;
+            dirtyFreezes.set(player);
+            scheduleFrame();
+        }
+
+        private synchronized void setScore(int player, int score) {
+            scores[player] = score;
+            dirtyScores.set(player);
+            scheduleFrame();
+        }
+
+        private synchronized void announceWinner(int[] players) {
+            winners = players;
+            scheduleFrame();
+        }
+
+        /**
+         * Applies all the pending changes to the swing components.
+         * @pre called on the event dispatch thread.
+         */
+        private void applyPending() {
+            boolean applyTimer, applyElapsed, applyWarn;
+            long applyMillies;
+            int[] applyWinners;
+
+            // take the pending changes (the game threads only wait for the copying)
+            synchronized (this) {
+                frameScheduled = false;
+                appliedCards.clear();
+                appliedCards.or(dirtyCards);
+                for (int slot = dirtyCards.nextSetBit(0); slot >= 0; slot = dirtyCards.nextSetBit(slot + 1))
+                    appliedCardValues[slot] = cards[slot];
+                dirtyCards.clear();
+
+                appliedTokens.clear();
+                appliedTokens.or(dirtyTokens);
+                for (int slot = dirtyTokens.nextSetBit(0); slot >= 0; slot = dirtyTokens.nextSetBit(slot + 1)) {
+                    appliedTokenValues[slot].clear();
+                    appliedTokenValues[slot].or(tokens[slot]);
+                }
+                dirtyTokens.clear();
+
+                applyTimer = timerDirty;
+                applyElapsed = elapsed;
+                applyMillies = timerMillies;
+                applyWarn = timerWarn;
+                timerDirty = false;
+
+                appliedFreezes.clear();
+                appliedFreezes.or(dirtyFreezes);
+                for (int player = dirtyFreezes.nextSetBit(0); player >= 0; player = dirtyFreezes.nextSetBit(player + 1))
+                    appliedFreezeValues[player] = freezes[player];
+                dirtyFreezes.clear();
+
+                appliedScores.clear();
+                appliedScores.or(dirtyScores);
+                for (int player = dirtyScores.nextSetBit(0); player >= 0; player = dirtyScores.nextSetBit(player + 1))
+                    appliedScoreValues[player] = scores[player];
+                dirtyScores.clear();
+
+                applyWinners = winners;
+                winners = null;
+            }
+
+            for (int slot = appliedCards.nextSetBit(0); slot >= 0; slot = appliedCards.nextSetBit(slot + 1)) {
+                if (appliedCardValues[slot] < 0) gamePanel.removeCard(slot);
+                else gamePanel.placeCard(slot, appliedCardValues[slot]);
+            }
+            gamePanel.repaintDirtySlots();
+
+            for (int slot = appliedTokens.nextSetBit(0); slot >= 0; slot = appliedTokens.nextSetBit(slot + 1))
+                gamePanel.setTokens(slot, appliedTokenValues[slot]);
+
+            if (applyTimer) {
+                if (applyElapsed) timerPanel.setElapsed(applyMillies);
+                else timerPanel.setCountdown(applyMillies, applyWarn);
+            }
+
+            for (int player = appliedFreezes.nextSetBit(0); player >= 0; player = appliedFreezes.nextSetBit(player + 1))
+                playersPanel.setFreeze(player, appliedFreezeValues[player]);
+            for (int player = appliedScores.nextSetBit(0); player >= 0; player = appliedScores.nextSetBit(player + 1))
+                playersPanel.setScore(player, appliedScoreValues[player]);
+
+            if (applyWinners != null) {
+                playersPanel.setVisible(false);
+                winnerPanel.announceWinner(applyWinners);
+                winnerPanel.setVisible(true);
+            }
+        }
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        updates.setCard(slot, card);
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        updates.setCard(slot, -1);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        updates.setToken(player, slot, true);
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        updates.clearTokens();
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        updates.clearTokens(slot);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        updates.setToken(player, slot, false);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        updates.setTimer(false, millies, warn);
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        updates.setTimer(true, millies, false);
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        updates.setFreeze(player, millies);
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        updates.setScore(player, score);
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        updates.announceWinner(players);
     }
 
     @Override
     public void dispose() {
-        super.dispose();
+        // apply whatever is still pending before closing the window
+        EventQueue.invokeLater(() -> {
+            updates.frameTimer.stop();
+            updates.applyPending();
+            super.dispose();
+        });
     }
 }
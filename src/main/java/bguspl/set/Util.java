@@ -1,6 +1,7 @@
 package bguspl.set;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -40,6 +41,46 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Lazily finds the sets in the given collection of cards, one at a time as the stream is consumed.
+     *
+     * @param deck - a collection of cards (may not include null objects, must not change while the stream is used).
+     * @return - a stream of integer arrays, each one contains the card ids of a legal set.
+     */
+    default Stream<int[]> streamSets(List<Integer> deck) {
+        return findSets(deck, Integer.MAX_VALUE).stream();
+    }
+
+    /**
+     * Counts the sets in the given collection of cards.
+     *
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - the number of legal sets.
+     */
+    default int countSets(List<Integer> deck) {
+        return findSets(deck, Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * Checks if there is a set in the given collection of cards.
+     *
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - true iff the collection contains at least one legal set.
+     */
+    default boolean hasSet(List<Integer> deck) {
+        return !findSets(deck, 1).isEmpty();
+    }
+
+    /**
+     * Finds and returns all the sets in the given collection of cards. Large collections may be searched in parallel.
+     *
+     * @param deck - a collection of cards (may not include null objects).
+     * @return - a list of integer arrays, each one contains the card ids of a legal set.
+     */
+    default List<int[]> findAllSets(List<Integer> deck) {
+        return findSets(deck, Integer.MAX_VALUE);
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
@@ -1,63 +1,70 @@
 package bguspl.set;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * The implementation of the UserInterface interface.
  */
 public class UtilImpl implements Util {
 
+    /**
+     * Decks smaller than this are searched for all sets in the calling thread.
+     */
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * The number of first card indices a single fork/join task searches sequentially.
+     */
+    private static final int SEQUENTIAL_RANGE = 4;
+
     private final Config config;
+    private final CardCatalog catalog;
 
     public UtilImpl(Config config) {
         this.config = config;
-    }
-
-    private void cardToFeatures(int card, int[] features) {
-        for (int i = config.featureCount - 1; i >= 0; --i) {
-            features[i] = card % config.featureSize;
-            card /= config.featureSize;
-        }
+        this.catalog = config.catalog;
     }
 
     @Override
     public int[] cardToFeatures(int card) {
         int[] features = new int[config.featureCount];
-        cardToFeatures(card, features);
+        catalog.copyFeatures(card, features, 0);
         return features;
     }
 
     @Override
     public int[][] cardsToFeatures(int[] cards) {
         int[][] features = new int[cards.length][config.featureCount];
-        IntStream.range(0, cards.length).forEach(i -> cardToFeatures(cards[i], features[i]));
+        for (int i = 0; i < cards.length; ++i)
+            catalog.copyFeatures(cards[i], features[i], 0);
         return features;
     }
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
+        // reads the features straight from the catalog, so testing a set does not allocate
         for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
+            int first = cards.length == 0 ? 0 : catalog.feature(cards[0], i);
+            boolean sameSame = true;
+            int seen = 0;  // a bit per feature value
+            for (int card : cards) {
+                int value = catalog.feature(card, i);
+                sameSame &= value == first;
+                seen |= 1 << value;
+            }
+            boolean butDifferent = Integer.bitCount(seen) == cards.length;
 
             if (sameSame == butDifferent) return false;
         }
@@ -66,9 +73,262 @@ public class UtilImpl implements Util {
 
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        GameEvents.SetSearch event = GameEvents.isSetSearchEnabled() ? new GameEvents.SetSearch() : null;
+        if (event != null) event.begin();
+
+        List<int[]> sets;
+        if (config.featureSize < 3) sets = findSetsByCombinations(deck, count);
+        else {
+            sets = new LinkedList<>();
+            if (count > 0 && deck.size() >= config.featureSize)
+                new SetSearch(deck).collect(0, deck.size(), sets, count);
+        }
+
+        if (event != null && event.shouldCommit()) {
+            event.deckSize = deck.size();
+            event.found = sets.size();
+            event.commit();
+        }
+        return sets;
+    }
+
+    @Override
+    public Stream<int[]> streamSets(List<Integer> deck) {
+        if (config.featureSize < 3) return findSetsByCombinations(deck, Integer.MAX_VALUE).stream();
+        if (deck.size() < config.featureSize) return Stream.empty();
+
+        SetCursor cursor = new SetCursor(new SetSearch(deck), 0, deck.size());
+        Iterator<int[]> iterator = new Iterator<int[]>() {
+            private boolean ready, hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (!ready) {
+                    hasNext = cursor.next();
+                    ready = true;
+                }
+                return hasNext;
+            }
+
+            @Override
+            public int[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                ready = false;
+                return cursor.set();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public int countSets(List<Integer> deck) {
+        if (config.featureSize < 3) return findSetsByCombinations(deck, Integer.MAX_VALUE).size();
+        if (deck.size() < config.featureSize) return 0;
+
+        int count = 0;
+        SetCursor cursor = new SetCursor(new SetSearch(deck), 0, deck.size());
+        while (cursor.next()) ++count;
+        return count;
+    }
+
+    @Override
+    public boolean hasSet(List<Integer> deck) {
+        if (config.featureSize < 3) return !findSets(deck, 1).isEmpty();
+
+        GameEvents.SetSearch event = GameEvents.isSetSearchEnabled() ? new GameEvents.SetSearch() : null;
+        if (event != null) event.begin();
+        boolean found = deck.size() >= config.featureSize && new SetCursor(new SetSearch(deck), 0, deck.size()).next();
+        if (event != null && event.shouldCommit()) {
+            event.deckSize = deck.size();
+            event.found = found ? 1 : 0;
+            event.commit();
+        }
+        return found;
+    }
+
+    @Override
+    public List<int[]> findAllSets(List<Integer> deck) {
+        if (config.featureSize < 3 || deck.size() < PARALLEL_THRESHOLD)
+            return findSets(deck, Integer.MAX_VALUE);
+
+        return ForkJoinPool.commonPool().invoke(new FindSetsTask(new SetSearch(deck), 0, deck.size()));
+    }
+
+    /**
+     * The search state of the cards of a deck: their ids and index in the deck.
+     * The first featureSize - 1 cards of a set determine the last one, so only featureSize - 1 cards are enumerated.
+     */
+    private class SetSearch {
+
+        private final int n;
+        private final int[] cards;
+        private final int[] indexOf;
+
+        private SetSearch(List<Integer> deck) {
+            n = deck.size();
+            cards = new int[n];
+            indexOf = new int[config.deckSize];
+            Arrays.fill(indexOf, -1);
+            for (int i = 0; i < n; ++i) {
+                cards[i] = deck.get(i);
+                indexOf[cards[i]] = i;
+            }
+        }
+
+        /**
+         * Adds to sets the sets whose first card (by deck index) is in the given range, until sets has count sets.
+         *
+         * @param from  - the first index of the range (inclusive).
+         * @param to    - the last index of the range (exclusive).
+         * @param sets  - the list to add the sets to.
+         * @param count - the maximum number of sets in the list.
+         */
+        private void collect(int from, int to, List<int[]> sets, int count) {
+            SetCursor cursor = new SetCursor(this, from, to);
+            while (sets.size() < count && cursor.next())
+                sets.add(cursor.set());
+        }
+    }
+
+    /**
+     * A lazy enumeration of the sets whose first card (by deck index) is in a given range.
+     */
+    private class SetCursor {
+
+        private final SetSearch search;
+        private final int to;
+        private final int[] combination;
+        private boolean started;
+        private int last;
+
+        private SetCursor(SetSearch search, int from, int to) {
+            this.search = search;
+            this.to = to;
+            combination = new int[config.featureSize - 1];
+            for (int i = 0; i < combination.length; ++i)
+                combination[i] = from + i;
+        }
+
+        /**
+         * Moves the cursor to the next set.
+         *
+         * @return - true iff there is another set.
+         */
+        private boolean next() {
+            if (started) step();
+            started = true;
+
+            int r = config.featureSize;
+            for (; combination[0] < to && combination[r - 2] < search.n - 1; step()) {
+                int card = completeSet(combination, search.cards);
+                if (card >= 0 && search.indexOf[card] > combination[r - 2]) {
+                    last = card;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return - the card ids of the current set (sorted).
+         */
+        private int[] set() {
+            int[] set = new int[config.featureSize];
+            for (int i = 0; i < combination.length; ++i)
+                set[i] = search.cards[combination[i]];
+            set[combination.length] = last;
+            Arrays.sort(set);
+            return set;
+        }
+
+        /**
+         * Generates the next combination in lexicographic order (leaving room for the last card).
+         */
+        private void step() {
+            int r = config.featureSize;
+            int t = r - 2;
+            while (t != 0 && combination[t] == search.n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r - 1; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+
+    /**
+     * Finds all the sets whose first card is in a range of deck indices, splitting the range between the threads of a
+     * ForkJoinPool. The lower indices have many more combinations, so ranges are split down to a few indices each.
+     */
+    private static class FindSetsTask extends RecursiveTask<List<int[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final SetSearch search;
+        private final int from;
+        private final int to;
+
+        private FindSetsTask(SetSearch search, int from, int to) {
+            this.search = search;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<int[]> compute() {
+            if (to - from <= SEQUENTIAL_RANGE) {
+                List<int[]> sets = new ArrayList<>();
+                search.collect(from, to, sets, Integer.MAX_VALUE);
+                return sets;
+            }
+
+            int middle = (from + to) >>> 1;
+            FindSetsTask right = new FindSetsTask(search, middle, to);
+            right.fork();
+            List<int[]> sets = new FindSetsTask(search, from, middle).compute();
+            sets.addAll(right.join());
+            return sets;
+        }
+    }
+
+    /**
+     * Computes the only card that forms a legal set together with the given cards (featureSize - 1 cards, at least 2).
+     * For every feature, the given cards must either all be the same or all be different, and the missing card gets
+     * the same value or the single value that is left, respectively.
+     *
+     * @param combination - indices of the cards (in the cards array).
+     * @param cards       - the card ids.
+     * @return - the id of the completing card, or -1 if there is no such card.
+     */
+    private int completeSet(int[] combination, int[] cards) {
+        int card = 0;
+        int allValues = (1 << config.featureSize) - 1;
+        for (int i = 0; i < config.featureCount; ++i) {
+            int first = catalog.feature(cards[combination[0]], i);
+            int seen = 0;
+            boolean sameSame = true;
+            for (int index : combination) {
+                int value = catalog.feature(cards[index], i);
+                sameSame &= value == first;
+                seen |= 1 << value;
+            }
+
+            int value;
+            if (sameSame) value = first;
+            else if (Integer.bitCount(seen) == combination.length) value = Integer.numberOfTrailingZeros(~seen & allValues);
+            else return -1;
+            card = card * config.featureSize + value;
+        }
+        return card;
+    }
+
+    /**
+     * Finds sets by testing every combination of featureSize cards (for decks in which sets are not determined by
+     * all of their cards but one).
+     */
+    private List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
+        if (n < r) return sets;
         int[] combination = new int[r];
 
         for (int i = 0; i < r; ++i)
@@ -0,0 +1,113 @@
+package bguspl.set;
+
+import java.util.PriorityQueue;
+
+/**
+ * A simulated clock. Time stands still while any game thread is working; once every game thread is idle (sleeping
+ * on the clock, or waiting for another game thread), the time jumps to the end of the earliest sleep. So a game of
+ * computer players runs with the same timing rules (turn timeouts, freezes, delays) as in real time, only without
+ * waiting for them.
+ * Note: only game threads (see enter) may sleep on a virtual clock, and they must report every wait for another game
+ * thread (see idle), or the time either stops or jumps too early.
+ *
+ * @inv 0 <= idle <= threads
+ */
+public class VirtualClock implements Clock {
+
+    /**
+     * The time it takes a spinning thread to yield (see yieldTime).
+     */
+    private static final long YIELD_MILLIS = 1;
+
+    private long now;
+
+    /**
+     * The number of game threads, and how many of them are idle.
+     */
+    private int threads = 0;
+    private int idle = 0;
+
+    /**
+     * The times the sleeping threads wake up at.
+     */
+    private final PriorityQueue<Long> wakeups = new PriorityQueue<>();
+
+    /**
+     * Starts at the current time (so times look real).
+     */
+    public VirtualClock() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * @param start - the start time.
+     */
+    public VirtualClock(long start) {
+        now = start;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return now;
+    }
+
+    @Override
+    public synchronized void sleep(long millis) throws InterruptedException {
+        if (millis <= 0) return;
+        long wakeup = now + millis;
+        wakeups.add(wakeup);
+        ++idle;
+        advanceIfIdle();
+        try {
+            while (now < wakeup)
+                wait();
+        } finally {
+            if (now < wakeup && wakeups.remove(wakeup)) --idle;  // interrupted (woken sleepers were counted busy already)
+        }
+    }
+
+    @Override
+    public void yieldTime() {
+        try {
+            sleep(YIELD_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public synchronized void enter() {
+        ++threads;
+    }
+
+    @Override
+    public synchronized void exit() {
+        --threads;
+        advanceIfIdle();
+    }
+
+    @Override
+    public synchronized void idle() {
+        ++idle;
+        advanceIfIdle();
+    }
+
+    @Override
+    public synchronized void busy() {
+        --idle;
+    }
+
+    /**
+     * Moves the time to the earliest wakeup if all the game threads are idle, and wakes up the threads that are due
+     * (counting them busy right away, so the time does not move again before they run).
+     */
+    private void advanceIfIdle() {
+        if (idle < threads || wakeups.isEmpty()) return;
+        now = Math.max(now, wakeups.peek());
+        while (!wakeups.isEmpty() && wakeups.peek() <= now) {
+            wakeups.poll();
+            --idle;
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,120 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+/**
+ * A set claimed by a player, waiting for the dealer's verdict. Only the claiming player waits on a claim, so the
+ * dealer wakes up exactly that player when it delivers the verdict.
+ * A player reuses a single claim (and its arrays) for all its claims: once the verdict is delivered, it fills in
+ * the next set and queues the claim again (see reset()), so claiming allocates nothing.
+ *
+ * @inv verdict != null
+ */
+public final class Claim {
+
+    /**
+     * The id of the claiming player.
+     */
+    public final int player;
+
+    /**
+     * The slots of the claimed set, and the version of each slot when the player placed its token (see
+     * Table.version), so the dealer can tell if the set is still on the table.
+     */
+    public final int[] slots;
+    public final long[] versions;
+
+    /**
+     * The order of the claim in the queue it was added to (see ClaimQueue).
+     */
+    long ticket;
+
+    /**
+     * The verdict (NONE if the claim was cancelled).
+     */
+    private Verdict verdict = Verdict.NONE;
+
+    /**
+     * True iff the verdict was delivered.
+     */
+    private boolean done = false;
+
+    /**
+     * True iff the player is waiting for the verdict (and is idle as far as the clock is concerned).
+     */
+    private boolean waiting = false;
+
+    private final Clock clock;
+
+    public Claim(int player, int[] slots, long[] versions, Clock clock) {
+        this.player = player;
+        this.slots = slots;
+        this.versions = versions;
+        this.clock = clock;
+    }
+
+    public Claim(int player, int[] slots, long[] versions) {
+        this(player, slots, versions, Clock.SYSTEM);
+    }
+
+    public Claim(int player) {
+        this(player, new int[0], new long[0]);
+    }
+
+    /**
+     * Forgets the verdict, before the claim is queued again.
+     * @pre isDone() (or the claim was never queued)
+     * @post !isDone()
+     */
+    public synchronized void reset() {
+        verdict = Verdict.NONE;
+        done = false;
+        waiting = false;
+    }
+
+    /**
+     * Delivers the verdict and wakes up the claiming player (a claim only takes its first verdict).
+     * @param verdict - the verdict.
+     * @return true iff this was the first verdict.
+     */
+    public synchronized boolean complete(Verdict verdict) {
+        if (done) return false;
+        this.verdict = verdict;
+        done = true;
+        if (waiting) {
+            waiting = false;
+            clock.busy();
+        }
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Waits for the verdict.
+     * @return the verdict.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized Verdict await() throws InterruptedException {
+        if (!done) {
+            waiting = true;
+            clock.idle();
+        }
+        try {
+            while (!done)
+                wait();
+        } finally {
+            if (waiting) {  // interrupted
+                waiting = false;
+                clock.busy();
+            }
+        }
+        return verdict;
+    }
+
+    /**
+     * @return true iff the verdict was delivered.
+     */
+    public synchronized boolean isDone() {
+        return done;
+    }
+}
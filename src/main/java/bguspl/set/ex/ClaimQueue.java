@@ -0,0 +1,166 @@
+package bguspl.set.ex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The claims waiting for the dealer, in the order they were made. Each player has a slot holding its pending claim
+ * (a player has at most one), and the ids of the players are queued in a ring, in the order of their claims.
+ * Adding, cancelling and taking a claim are O(1), lock free and allocate nothing. Cancelling a claim only empties
+ * its slot, and the dealer drops the player id when it reaches it. A player id is in the ring at most once, so the
+ * ring never holds more than one entry per player; a player that claims again while its old entry is still there
+ * is queued again at the end of the line when the dealer reaches that entry. Players add claims concurrently; only
+ * the dealer takes them.
+ *
+ * @inv size() == the number of players with a pending claim
+ * @inv every player with a pending claim has an entry in the ring
+ */
+public class ClaimQueue {
+
+    /**
+     * The pending claim of each player (null if none).
+     */
+    private final AtomicReferenceArray<Claim> slots;
+
+    /**
+     * The ids of the players (plus one, 0 is an empty entry), in the order of their claims: the entry at position p
+     * is at ring[p % ring.length()].
+     */
+    private final AtomicIntegerArray ring;
+
+    /**
+     * 1 iff the player has an entry in the ring (or is adding one).
+     */
+    private final AtomicIntegerArray queued;
+
+    /**
+     * The ticket of the claim each player's entry in the ring was added for (published by the entry).
+     */
+    private final long[] entryTickets;
+
+    /**
+     * The position after the last entry added to the ring.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position of the oldest entry in the ring (used by the dealer only).
+     */
+    private long head = 0;
+
+    /**
+     * The next ticket.
+     */
+    private final AtomicLong tickets = new AtomicLong();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * @param players - the number of players.
+     */
+    public ClaimQueue(int players) {
+        slots = new AtomicReferenceArray<>(players);
+        ring = new AtomicIntegerArray(players);
+        queued = new AtomicIntegerArray(players);
+        entryTickets = new long[players];
+    }
+
+    /**
+     * Queues a claim.
+     * @param claim - the claim.
+     * @pre !contains(claim.player)
+     * @post contains(claim.player)
+     */
+    public void add(Claim claim) {
+        claim.ticket = tickets.getAndIncrement();  // published to the dealer by setting the slot
+        slots.set(claim.player, claim);
+        size.incrementAndGet();
+        if (queued.compareAndSet(claim.player, 0, 1))  // otherwise the dealer finds the claim by the entry it has
+            enqueue(claim.player, claim.ticket);
+    }
+
+    /**
+     * Adds an entry to the ring.
+     * @param player - the player id.
+     * @param ticket - the ticket of the claim of the player.
+     * @pre the caller set the queued flag of the player (so the player has no other entry, and the ring has room).
+     */
+    private void enqueue(int player, long ticket) {
+        entryTickets[player] = ticket;
+        long position = tail.getAndIncrement();
+        ring.set((int) (position % ring.length()), player + 1);
+    }
+
+    /**
+     * @param player - the player id.
+     * @return true iff the player has a pending claim.
+     */
+    public boolean contains(int player) {
+        return slots.get(player) != null;
+    }
+
+    /**
+     * Cancels the pending claim of a player (its entry in the ring is dropped by the dealer).
+     * @param player - the player id.
+     * @return the cancelled claim, or null if the player had none.
+     * @post !contains(player)
+     */
+    public Claim remove(int player) {
+        Claim claim = slots.getAndSet(player, null);
+        if (claim != null) size.decrementAndGet();
+        return claim;
+    }
+
+    /**
+     * Takes the oldest pending claim (called by the dealer only).
+     * @return the claim, or null if there are no pending claims.
+     */
+    public Claim poll() {
+        while (head != tail.get()) {
+            int index = (int) (head % ring.length());
+            int entry;
+            while ((entry = ring.get(index)) == 0)  // a player took the position, and is about to fill it in
+                Thread.onSpinWait();
+            ring.set(index, 0);
+            ++head;
+
+            int player = entry - 1;
+            Claim claim = slots.get(player);
+            if (claim != null && claim.ticket != entryTickets[player]) {
+                enqueue(player, claim.ticket);  // claimed again after the entry was added: to the end of the line
+                continue;
+            }
+            queued.set(player, 0);  // before taking the claim, so a claim added from now on adds an entry
+            claim = slots.getAndSet(player, null);
+            if (claim != null) {  // null if it was cancelled
+                size.decrementAndGet();
+                return claim;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of pending claims.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Cancels all the pending claims.
+     * @return the cancelled claims.
+     */
+    public List<Claim> clear() {
+        List<Claim> cancelled = new ArrayList<>();
+        for (int player = 0; player < slots.length(); player++) {
+            Claim claim = remove(player);
+            if (claim != null) cancelled.add(claim);
+        }
+        return cancelled;
+    }
+}
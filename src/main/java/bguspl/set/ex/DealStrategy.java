@@ -0,0 +1,37 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.List;
+
+/**
+ * Chooses the cards the dealer places on the table.
+ */
+public interface DealStrategy {
+
+    /**
+     * Chooses cards from the deck to place in the empty slots of the table.
+     *
+     * @param tableCards - the cards on the table.
+     * @param deck       - the cards in the dealer's deck (not changed).
+     * @param count      - the number of cards to choose (at most deck.size()).
+     * @return - count distinct cards of the deck.
+     */
+    List<Integer> choose(List<Integer> tableCards, List<Integer> deck, int count);
+
+    /**
+     * @param env - the game environment (env.config.dealStrategy selects the strategy).
+     * @return - the deal strategy of the game.
+     */
+    static DealStrategy create(Env env) {
+        switch (env.config.dealStrategy.toLowerCase()) {
+            case "random":
+                return new RandomDealStrategy();
+            case "setguaranteeing":
+                return new SetGuaranteeingDealStrategy(env.util);
+            default:
+                env.logger.severe("unknown deal strategy " + env.config.dealStrategy + ", dealing at random");
+                return new RandomDealStrategy();
+        }
+    }
+}
@@ -1,25 +1,29 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
 import bguspl.set.UtilImpl;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 /**
  * This class manages the dealer's threads and data
- * @inv 0 <= deck.size() <= 81
+ * @inv 0 <= deck.size() <= env.config.deckSize
  */
 public class Dealer implements Runnable {
 
     /**
-     * The list of sets the dealer need to check.
+     * The claims the dealer need to check, in order.
      */
-    public Queue<Integer> setsToCheck = new LinkedBlockingQueue<>();
+    public final ClaimQueue setsToCheck;
 
     /**
      * The game environment object.
@@ -32,6 +36,16 @@ public class Dealer implements Runnable {
     private final Table table;
     private final Player[] players;
 
+    /**
+     * Chooses the cards to place on the table.
+     */
+    private final DealStrategy dealStrategy;
+
+    /**
+     * The cards of the claim being checked (reused for every claim, so checking does not allocate).
+     */
+    private final int[] setByCards;
+
     /**
      * The list of card ids that are left in the dealer's deck.
      * 
@@ -48,21 +62,30 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
+    /**
+     * The dealer thread (set when it starts).
+     */
+    private volatile Thread thread;
+
     /**
      * Array of the players treads
      */
     private Thread[] playersThreads;
 
     /**
-     * true iff reshuffling now
+     * true iff reshuffling now (the players ignore key presses meanwhile)
      */
-    static boolean reshuffleNow = false;
+    volatile boolean reshuffleNow = false;
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
+        setsToCheck = new ClaimQueue(env.config.players);
         deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        dealStrategy = DealStrategy.create(env);
+        setByCards = new int[env.config.featureSize];
+        env.metrics.watchClaimQueue(() -> setsToCheck.size());
     }
 
     /**
@@ -70,6 +93,8 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run() {
+        thread = Thread.currentThread();
+        env.clock.enter();
         createPlayersThreads(); // creat the players threads.
         dealCards();   // dealing the cards to the table.
         resetTimer();  // initial the timer at 60 sec/turnTimeoutMillis.
@@ -82,13 +107,14 @@ public class Dealer implements Runnable {
         }
         announceWinners();
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+        env.clock.exit();
     }
 
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
+        while (!terminate && env.clock.currentTimeMillis() < reshuffleTime) {
         updateTimerDisplay(false);
         sleepUntilWokenOrTimeout();
         
@@ -100,23 +126,13 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         terminate = true;
-        for(int i = players.length - 1; i >= 0; i = i - 1){
+        boolean onDealerThread = Thread.currentThread() == thread;
+        if(onDealerThread) env.clock.idle();  // from here on the dealer only waits for the players to finish.
+        for(int i = players.length - 1; i >= 0; i = i - 1)  // stop them all first, so none keeps playing meanwhile.
             players[i].terminate();
+        for(int i = players.length - 1; i >= 0; i = i - 1){
 
-
-            players[i].setWasASet(0);   // take care if the player wait for the dealer to check him.
-            players[i].resetWaitToBeChecked();
-            synchronized(this){
-                this.notifyAll();
-            }
-
-            if(players[i].getIncomingActionQueue().size() == 0){   // take care if the player wait for the queue to be not empthy.
-                synchronized(players[i]){
-                    players[i].getIncomingActionQueue().add(0);
-                    players[i].getSetArray().clear();
-                    players[i].notifyAll();
-                }
-            }
+            cancel(i);   // take care if the player wait for the dealer to check him (the player wakes himself from his queue).
 
             try {
                 players[i].getThread().join();
@@ -124,6 +140,7 @@ public class Dealer implements Runnable {
                 e.printStackTrace();
             }
         }
+        if(onDealerThread) env.clock.busy();
     }
 
     /**
@@ -132,55 +149,44 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        if (terminate) return true;
+        long start = System.nanoTime();
+        boolean hasSet = env.util.hasSet(deck);
+        env.metrics.setSearch(System.nanoTime() - start);
+        return !hasSet;
     }
 
 
     /**
-     * Remove set from table- remove the cards and tokens; remove the tokens from other player list.
+     * Remove set from table- remove the cards and tokens. The other players find out by the slot versions: their
+     * tokens there are dropped by themselves, and their claims with these slots are cancelled when checked.
      */
-    private void removeSetFromTable(ArrayList<Integer> setsArray, int playerId) {
-        for(Integer slot : setsArray){
-            updateThePlayersThatCardRemoved(slot, playerId);
+    private void removeSetFromTable(int[] setsArray) {
+        for(int slot : setsArray){
             table.removeCard(slot);
         }
     }
 
     /**
-     * This function recive a slot that was removed and updated all the players.
-     * @param slot the slot was remove
+     * After a set founded and removed, this function fill the table with cards.
      */
-    private void updateThePlayersThatCardRemoved(int slot, int playerId){
-        List<Integer>[] lst = table.getToken();
-
-        if(lst[slot].size() > 1){ //  where there is more then 1 player who pick this card.
-            for(Integer id : lst[slot]){
-                if(id != playerId){
-
-                    players[id].getSetArray().remove(players[id].getSetArray().indexOf(slot)); // remove the card from all other players setsArray.
-                    players[id].getIncomingActionQueue().remove(slot);  // remove the card from all other players IncomingActionQueue.
-
-                    if(setsToCheck.contains(id)){  // if the players has a set
-                        setsToCheck.remove(id);     // dont check the set
-                        players[id].setWasASet(0);  // correct the indicator.
-                        players[id].resetWaitToBeChecked(); // tell the player he can continue
-                    }
-                }
-            }
+    private void placeCardsOnTable(int[] setsArray) {
+        List<Integer> cards = dealStrategy.choose(cardsOnTable(), deck, Math.min(setsArray.length, deck.size()));
+        for(int i = 0; i < cards.size(); i = i + 1){
+            table.placeCard(cards.get(i), setsArray[i]);
+            deck.remove(cards.get(i));
         }
     }
 
     /**
-     * After a set founded and removed, this function fill the table with cards.
+     * @return the cards on the table.
      */
-    private void placeCardsOnTable(ArrayList<Integer> setsArray) {
-        for(Integer slot : setsArray){  
-            if(deck.size() > 0){
-            int cardPickIndex = (int)(deck.size() * Math.random()); // generate card pick in range (0-deck.size -1)
-            table.placeCard(deck.get(cardPickIndex), slot);
-            deck.remove(cardPickIndex);
-            }
+    private List<Integer> cardsOnTable(){
+        List<Integer> cards = new ArrayList<>(env.config.tableSize);
+        for(int card : table.snapshot().cards()){
+            cards.add(card);
         }
+        return cards;
     }
 
 
@@ -190,53 +196,45 @@ public class Dealer implements Runnable {
     private void sleepUntilWokenOrTimeout(){
         if(env.config.turnTimeoutMillis > 0){
             try { 
-                Thread.sleep(Math.min(env.config.turnTimeoutMillis / 1000, 100) );
+                env.clock.sleep(Math.min(env.config.turnTimeoutMillis / 1000, 100) );
             } catch (InterruptedException e) {}
         }
 
+        long start = System.nanoTime();
         if(setsToCheck.size() > 0){
             boolean wasASet = checkForSets();
             updateTimerDisplay(wasASet);
         }
-
-        
+        env.metrics.dealerLoop(System.nanoTime() - start);
     }
 
    /**
      * This function check for sets and handle the removing/add card, update the players if set was correct.
      * @return true iff was a legal set that was pick by a player.
      */
-    private boolean checkForSets(){
+    protected boolean checkForSets(){
         boolean ans = false;
-        while(setsToCheck.size() > 0){
-            int playerId;
-            synchronized(this){
-                playerId = setsToCheck.remove();
+        for(Claim claim = setsToCheck.poll(); claim != null; claim = setsToCheck.poll()){
+            int playerId = claim.player;
+            GameEvents.ClaimChecked event = GameEvents.isClaimCheckedEnabled() ? new GameEvents.ClaimChecked() : null;
+            if(event != null) event.begin();
+            Verdict verdict = verify(claim);
+            if(verdict != Verdict.NONE){  // NONE: a card of the set was removed meanwhile- dont count it.
+                env.metrics.claimChecked(verdict == Verdict.LEGAL);
             }
-            Object[] setBySlot = players[playerId].getSetArray().toArray();  // arraylist of players set convert to array.
-            int[] setByCards = new int[3];  // int array to sent to check!
-        
-            for(int i = 0; i < 3; i = i + 1){
-                setByCards[i] = table.slotToCard[(int)setBySlot[i]];
-            }
-
-            if(env.util.testSet(setByCards)){
+            if(verdict == Verdict.LEGAL){
                 synchronized(this){
-                    ArrayList<Integer> set = players[playerId].getSetArray();
-                    removeSetFromTable(set, playerId); // update the players about the card that was removed and delete the cards.
-                    placeCardsOnTable(set);
-                    players[playerId].setWasASet(1);
+                    removeSetFromTable(claim.slots); // delete the cards (the other players will find out by the slot versions).
+                    placeCardsOnTable(claim.slots);
                     players[playerId].point(); // update he player score
                     ans = true;
                 }
             }
-            else{
-                players[playerId].setWasASet(2);
-                }
-            players[playerId].resetWaitToBeChecked();
-            
-            synchronized(this){
-                this.notifyAll();
+            claim.complete(verdict);
+            if(event != null && event.shouldCommit()){
+                event.player = playerId;
+                event.verdict = verdict.name();
+                event.commit();
             }
             
         }
@@ -244,6 +242,21 @@ public class Dealer implements Runnable {
     }
 
 
+    /**
+     * Checks a claimed set against the table, without allocating.
+     * @param claim - the claim.
+     * @return NONE if a card of the set was removed since it was claimed, otherwise LEGAL or ILLEGAL.
+     */
+    protected Verdict verify(Claim claim){
+        if(!table.isCurrent(claim.slots, claim.versions)) return Verdict.NONE;
+        int[] cards = claim.slots.length == setByCards.length ? setByCards : new int[claim.slots.length];
+        TableSnapshot board = table.snapshot();
+        for(int i = 0; i < claim.slots.length; i = i + 1){
+            cards[i] = board.card(claim.slots[i]);
+        }
+        return env.util.testSet(cards) ? Verdict.LEGAL : Verdict.ILLEGAL;
+    }
+
     /**
      * Reset and/or update the countdown and the countdown display.
      */
@@ -251,7 +264,7 @@ public class Dealer implements Runnable {
         if(reset)
             resetTimer();
         else{
-            long timeToUpdate = reshuffleTime - System.currentTimeMillis();
+            long timeToUpdate = reshuffleTime - env.clock.currentTimeMillis();
             if(timeToUpdate > 0){
                 env.ui.setCountdown(timeToUpdate, timeToUpdate < env.config.turnTimeoutWarningMillis);
             }
@@ -266,7 +279,7 @@ public class Dealer implements Runnable {
      * @post There is no cards on the table.
      */
     protected void removeAllCardsFromTable() {
-        for (int i = 0; i < 12; i = i + 1){   // clear the table- delete the 12 cards.
+        for (int i = 0; i < env.config.tableSize; i = i + 1){   // clear the table- delete all the cards.
             if(table.slotToCard[i] != null){
                 int card = table.slotToCard[i];
                 deck.add(card);               // return it to the deck
@@ -276,13 +289,12 @@ public class Dealer implements Runnable {
         env.ui.removeTokens();  // remove all the token from the ui
         table.resetTokens();    // remove all the token from ths table list.
 
-        for(Player player : players){    // clear all players setArray and queue of actions.
+        for(Player player : players){    // clear all players queue of actions (their tokens are stale now).
                 player.getIncomingActionQueue().clear();
-                player.getSetArray().clear();
             }
 
-        setsToCheck.clear();
-        
+        for(Claim claim : setsToCheck.clear())  // cancel the claims that were not checked.
+            claim.complete(Verdict.NONE);
     }
 
     /**
@@ -326,32 +338,71 @@ public class Dealer implements Runnable {
     }
 
     /**
-     * add an int to the setsToCheck queue.
-     * @param id
+     * add a claim to the setsToCheck queue.
+     * @param id       - the id of the claiming player.
+     * @param slots    - the slots of the set.
+     * @param versions - the versions of the slots when the player placed its tokens.
+     * @return the claim, completed by the dealer with its verdict (at once, if the game was terminated).
      * @pre setsToCheck doesn't contain id
      * @post setsToCheck contains id 
      */
-    public void addToQueue(int id){
-        setsToCheck.add(id);
+    public Claim addToQueue(int id, int[] slots, long[] versions){
+        return addToQueue(new Claim(id, slots, versions, env.clock));
+    }
+
+    /**
+     * add a claim to the setsToCheck queue, forgetting its previous verdict (a player reuses its claim).
+     * @param claim - the claim, filled in with the slots of the set and their versions.
+     * @return the claim, completed by the dealer with its verdict (at once, if the game was terminated).
+     * @pre setsToCheck doesn't contain claim.player
+     * @post setsToCheck contains claim.player
+     */
+    public Claim addToQueue(Claim claim){
+        int id = claim.player;
+        claim.reset();
+        if(terminate){
+            claim.complete(Verdict.NONE);
+            return claim;
+        }
+        setsToCheck.add(claim);
+        if(terminate) cancel(id);  // terminate() might have missed it.
+        return claim;
+    }
+
+    /**
+     * this method was created for the tests
+     * add a claim of no slots to the setsToCheck queue.
+     */
+    public Claim addToQueue(int id){
+        return addToQueue(id, new int[0], new long[0]);
     }
 
     /**
-     * This method select 12 card, if there is, and place them on the game table.
+     * Cancels the pending claim of a player (if any), waking up only that player.
+     * @param playerId - the id of the claiming player.
+     */
+    private void cancel(int playerId){
+        Claim claim = setsToCheck.remove(playerId);
+        if(claim != null) claim.complete(Verdict.NONE);
+    }
+
+    /**
+     * This method select tableSize card, if there is, and place them on the game table.
      * @pre The table was empty
      * @post The table is full or not full but the deck is empty.
      */
     protected void dealCards(){
-        if(deck.size() <= 12){   // if there is no more then 12 card in the deck- we place them all!
+        if(deck.size() <= env.config.tableSize){   // if there is no more cards in the deck than slots- we place them all!
             for(int i = 0; i < deck.size(); i = i + 1){
                 table.placeCard(deck.get(i), i);
             }
             deck.clear(); // delete all card from the deck. (we used them all)
         }
-        else{     // theres more than 12 cards - we generate pick with Random.
-            for(int i = 0; i < 12; i = i +1){
-                int cardPickIndex = (int)(deck.size() * Math.random()); // generate card pick in range (0-deck.size -1)
-                table.placeCard(deck.get(cardPickIndex), i);
-                deck.remove(cardPickIndex);
+        else{     // theres more cards than slots - the deal strategy picks them.
+            List<Integer> cards = dealStrategy.choose(cardsOnTable(), deck, env.config.tableSize);
+            for(int i = 0; i < cards.size(); i = i +1){
+                table.placeCard(cards.get(i), i);
+                deck.remove(cards.get(i));
             }
         }
     }
@@ -371,7 +422,7 @@ public class Dealer implements Runnable {
      */
     private void resetTimer(){
         env.ui.setCountdown(env.config.turnTimeoutMillis, false);
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
+        reshuffleTime = env.clock.currentTimeMillis() + env.config.turnTimeoutMillis;
     }
 
     /**
@@ -379,27 +430,104 @@ public class Dealer implements Runnable {
      */
     private synchronized void reshuffleCards(){
         reshuffleNow = true;
+        env.metrics.reshuffled();
+        GameEvents.Reshuffle event = GameEvents.isReshuffleEnabled() ? new GameEvents.Reshuffle() : null;
+        if(event != null) event.begin();
         
         if(setsToCheck.size() > 0){
             boolean wasASet = checkForSets();
             updateTimerDisplay(wasASet);
-            this.notifyAll();
         }
 
-        removeAllCardsFromTable();
-        dealCards();
-        resetTimer();
-        
-        for(Player player : players){
-            player.setWasASet(0);
-            player.resetWaitToBeChecked();
+        if(env.config.partialReshuffle && replaceCardsForSet())
+            resetTimer();
+        else{
+            removeAllCardsFromTable();  // cancels the pending claims, so the claiming players continue.
+            dealCards();
+            resetTimer();
         }
         reshuffleNow = false;
+        if(event != null && event.shouldCommit()){
+            event.deckSize = deck.size();
+            event.commit();
+        }
         
     }
 
+    /**
+     * Replaces the fewest cards on the table (at least one) that make a new set with cards of the deck, preferring
+     * empty slots and then slots with no tokens. The tokens on the other slots are kept.
+     * @return true iff cards were replaced (false if the deck has no cards that make a set with the table).
+     */
+    protected boolean replaceCardsForSet(){
+        if(deck.isEmpty()) return false;
+
+        List<Integer> tableCards = cardsOnTable();
+        List<Integer> left = new ArrayList<>(deck);
+        Collections.shuffle(tableCards);  // shuffled, so the replaced cards vary
+        Collections.shuffle(left);
+        Set<Integer> fromDeck = new HashSet<>(left);
+        List<Integer> cards = new ArrayList<>(tableCards);  // table cards first, so sets with more of them are found first
+        cards.addAll(left);
+
+        for(int replace = 1; replace <= env.config.featureSize; replace = replace + 1){
+            int count = replace;
+            Optional<int[]> set = env.util.streamSets(cards)
+                    .filter(candidate -> (int) Arrays.stream(candidate).filter(fromDeck::contains).count() == count)
+                    .findFirst();
+            if(set.isPresent()){
+                List<Integer> newCards = new ArrayList<>(count);
+                Set<Integer> kept = new HashSet<>();
+                for(int card : set.get()){
+                    if(fromDeck.contains(card)) newCards.add(card);
+                    else kept.add(card);
+                }
+                List<Integer> slots = slotsToReplace(kept, count);
+                if(slots.size() < count) continue;
+
+                for(int i = 0; i < count; i = i + 1){
+                    int slot = slots.get(i);
+                    Integer old = table.slotToCard[slot];
+                    if(old != null){
+                        table.removeCard(slot);  // the tokens there are stale now
+                        deck.add(old);
+                    }
+                    table.placeCard(newCards.get(i), slot);
+                    deck.remove(newCards.get(i));
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param kept  - the cards that must stay on the table.
+     * @param count - the number of slots to choose.
+     * @return up to count slots of cards that are not kept: empty slots first, then slots with no tokens.
+     */
+    private List<Integer> slotsToReplace(Set<Integer> kept, int count){
+        List<Integer> empty = new ArrayList<>();
+        List<Integer> untokened = new ArrayList<>();
+        List<Integer> tokened = new ArrayList<>();
+        for(int slot = 0; slot < env.config.tableSize; slot = slot + 1){
+            Integer card = table.slotToCard[slot];
+            if(card == null) empty.add(slot);
+            else if(kept.contains(card)) continue;
+            else if(table.getToken()[slot].isEmpty()) untokened.add(slot);
+            else tokened.add(slot);
+        }
+        Collections.shuffle(untokened);
+        Collections.shuffle(tokened);
+        List<Integer> slots = new ArrayList<>(empty);
+        slots.addAll(untokened);
+        slots.addAll(tokened);
+        return slots.subList(0, Math.min(count, slots.size()));
+    }
+
     private void runPlayersThreads(){
         for(int i = 0; i < playersThreads.length; i = i + 1){
+            env.clock.enter();
             playersThreads[i].start();
         }
     }
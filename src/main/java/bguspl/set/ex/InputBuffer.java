@@ -0,0 +1,147 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The key presses waiting for a player. Pressing a key never blocks (it is called on the Swing event dispatch thread
+ * and on network threads): a press of a key that is already waiting is coalesced (e.g. a held key repeating), and a
+ * press when the buffer is full is dropped. Only the player thread takes keys, parking while there are none.
+ *
+ * @inv 0 <= size() <= capacity
+ */
+public class InputBuffer {
+
+    private final Queue<Integer> keys = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The slots of the waiting keys, so a key is coalesced atomically (a key is in it from before it is added to
+     * keys until after it is taken from them).
+     */
+    private final Set<Integer> waitingKeys = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The thread taking the keys (set when it first waits).
+     */
+    private volatile Thread consumer;
+
+    /**
+     * True iff the buffer was closed: the consumer does not wait anymore.
+     */
+    private volatile boolean closed = false;
+
+    /**
+     * True iff the consumer is waiting (and is idle as far as the clock is concerned); whoever clears it tells the
+     * clock the consumer is busy again.
+     */
+    private final AtomicBoolean waiting = new AtomicBoolean();
+
+    private final Clock clock;
+
+    /**
+     * @param capacity - the maximum number of waiting key presses.
+     * @param clock    - the game clock.
+     */
+    public InputBuffer(int capacity, Clock clock) {
+        this.capacity = capacity;
+        this.clock = clock;
+    }
+
+    /**
+     * @param capacity - the maximum number of waiting key presses.
+     */
+    public InputBuffer(int capacity) {
+        this(capacity, Clock.SYSTEM);
+    }
+
+    /**
+     * Adds a key press, without blocking.
+     * @param slot - the slot of the key.
+     * @return true iff the key press was added (false if it was coalesced or dropped).
+     */
+    public boolean offer(int slot) {
+        if (!waitingKeys.add(slot)) {  // coalesced
+            dropped.incrementAndGet();
+            return false;
+        }
+        if (size.incrementAndGet() > capacity) {  // full
+            size.decrementAndGet();
+            waitingKeys.remove(slot);
+            dropped.incrementAndGet();
+            return false;
+        }
+        keys.add(slot);
+        wake();
+        return true;
+    }
+
+    /**
+     * @return the oldest key press, or null if there are none.
+     */
+    public Integer poll() {
+        Integer slot = keys.poll();
+        if (slot != null) {
+            size.decrementAndGet();
+            waitingKeys.remove(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Waits until there are key presses, the buffer is closed or the thread is interrupted (called by the consumer
+     * only; it might also return spuriously).
+     */
+    public void await() {
+        consumer = Thread.currentThread();
+        clock.idle();  // before a producer can see waiting and tell the clock the consumer is busy
+        waiting.set(true);
+        if (keys.isEmpty() && !closed)
+            LockSupport.park(this);
+        if (waiting.compareAndSet(true, false)) clock.busy();  // not woken by offer or close (or did not wait)
+    }
+
+    private void wake() {
+        if (waiting.compareAndSet(true, false)) clock.busy();
+        LockSupport.unpark(consumer);
+    }
+
+    /**
+     * Removes all the waiting key presses.
+     */
+    public void clear() {
+        while (poll() != null) ;
+    }
+
+    /**
+     * Wakes up the consumer for good (when the game is terminated).
+     */
+    public void close() {
+        closed = true;
+        wake();
+    }
+
+    /**
+     * @return the number of waiting key presses.
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the number of key presses that were coalesced or dropped.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+}
@@ -1,39 +1,51 @@
 package bguspl.set.ex;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
 
 /**
  * This class manages the players' threads and data
  *
  * @inv id >= 0
  * @inv score >= 0
- * @inv 0 <= wasASet <= 2
+ * @inv wasASet != null
  */
 public class Player implements Runnable {
 
     
     /**
-     * Queue of the incoming action the player about to do.
+     * Queue of the incoming action the player about to do (filled without blocking, see InputBuffer).
      */
-    private Queue<Integer> incomingActionQueue = new LinkedBlockingQueue<Integer>(3);
+    private final InputBuffer incomingActionQueue;
 
     /**
      * List of the set the player has pick.
      */
-    private ArrayList<Integer> setsArray = new ArrayList<Integer>(3);
+    private final ArrayList<Integer> setsArray;
+
+    /**
+     * The version of each slot (see Table.version) when the player placed its token there.
+     */
+    private final long[] tokenVersions;
+
+    /**
+     * The claim of the player, reused for all its claims (see Claim).
+     */
+    private final Claim claim;
 
     /**
      * number represent the anser the dealer has return recording the set he checked.
      */
-    private int wasASet = 0;
+    private Verdict wasASet = Verdict.NONE;
 
     /**
      * true iff the player is in penelty.
      */
-    private boolean frozen = false;
+    private volatile boolean frozen = false;
 
     /**
      * The game environment object.
@@ -83,7 +95,7 @@ public class Player implements Runnable {
     /**
      * true iff the player is waiting for the dealer to check his set
      */
-    private boolean waitToBeChecked = false;
+    private volatile boolean waitToBeChecked = false;
 
     /**
      * The class constructor.
@@ -100,6 +112,11 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
+        incomingActionQueue = new InputBuffer(env.config.featureSize, env.clock);
+        setsArray = new ArrayList<Integer>(env.config.featureSize);
+        tokenVersions = new long[env.config.tableSize];
+        claim = new Claim(id, new int[env.config.featureSize], new long[env.config.featureSize], env.clock);
+        env.metrics.watchActionQueue(id, incomingActionQueue::size);
     }
 
     /**
@@ -112,64 +129,89 @@ public class Player implements Runnable {
         if (!human) createArtificialIntelligence();
         
         while (!terminate) {
-            Integer slot = 0;
-            synchronized(this){
-                while(incomingActionQueue.size() == 0){  // while there are no action to do wait.
-                    try {
-                        this.wait();
-                    } catch (InterruptedException e) {
-                        
-                    } 
-                }
-                slot = incomingActionQueue.poll();
-                this.notifyAll();
-                
+            Integer slot = incomingActionQueue.poll();
+            if(slot == null){  // while there are no action to do wait.
+                incomingActionQueue.await();
+                continue;
             }
-            synchronized(dealer){
-
-                if(setsArray.contains(slot)){ 
-                    table.removeToken(id, slot);
-                    setsArray.remove(slot);
-                }
-                else{
-                    if(setsArray.size() < 3 && table.slotToCard[slot] != null){
-                        table.placeToken(id, slot);
-                        setsArray.add(slot);
-
-                        if(setsArray.size() == 3){ // there is a set to be checked.
-                            waitToBeChecked = true;
-                            dealer.addToQueue(id); // add the player id to the dealer queue of sets to check.
-
-                            try {
-                                while(waitToBeChecked){
-                                    dealer.wait();
-                                }
-                            } catch (InterruptedException e) {}
-                        }
+            Claim pending = null;
+            dropStaleTokens();
+            if(setsArray.contains(slot)){ 
+                table.removeToken(id, slot);
+                setsArray.remove(slot);
+            }
+            else{
+                TableSnapshot board = table.snapshot();  // the card and its version, as they were together
+                if(setsArray.size() < env.config.featureSize && board.card(slot) != TableSnapshot.NONE
+                        && table.placeToken(id, slot, board.version(slot))){  // false if the card changed meanwhile
+                    setsArray.add(slot);
+                    tokenVersions[slot] = board.version(slot);
+
+                    if(setsArray.size() == env.config.featureSize){ // there is a set to be checked.
+                        waitToBeChecked = true;
+                        env.metrics.claimed();
+                        pending = claimSet(); // add the claim to the dealer queue of sets to check.
                     }
                 }
+            }
+            if(pending == null) checkIfSetWasCorrect();
+            else{  // wait for the verdict, only this player is woken up.
+                long claimStart = System.nanoTime();
+                try {
+                    wasASet = pending.await();
+                } catch (InterruptedException e) {}
+                waitToBeChecked = false;
+                env.metrics.claimLatency(System.nanoTime() - claimStart);
                 checkIfSetWasCorrect();
             }
             penalty();
-            synchronized(this){
-                this.notifyAll();
-            }
         }
-        if (!human) try { aiThread.join(); } catch( InterruptedException ignored) {} 
+        if (!human){
+            env.clock.idle();  // the computer player might be sleeping on the clock
+            try { aiThread.join(); } catch( InterruptedException ignored) {} 
+            env.clock.busy();
+        }
         env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+        env.clock.exit();
+    }
+
+    /**
+     * Drops the tokens on slots whose card was removed or replaced since the player placed them.
+     */
+    private void dropStaleTokens(){
+        for(int i = setsArray.size() - 1; i >= 0; i = i - 1){
+            int slot = setsArray.get(i);
+            if(table.version(slot) != tokenVersions[slot]){
+                table.removeToken(id, slot);  // in case the token was placed after the card was removed
+                setsArray.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Claims the set of the player's tokens (without allocating, the player's claim is reused).
+     * @return the claim.
+     * @pre setsArray.size() == env.config.featureSize
+     */
+    private Claim claimSet(){
+        for(int i = 0; i < claim.slots.length; i = i + 1){
+            claim.slots[i] = setsArray.get(i);
+            claim.versions[i] = tokenVersions[claim.slots[i]];
+        }
+        return dealer.addToQueue(claim);
     }
 
     /**
      * This function process the answer that was return by the dealer and acting accordingly.
-     * @post wasASet should be 0
+     * @post wasASet should be NONE
      */
     public void checkIfSetWasCorrect(){
-        if(wasASet == 1){  // 1 was a succed
+        if(wasASet == Verdict.LEGAL){
         	setsArray.clear();  // clear both setsArray and incoming actions.
         	incomingActionQueue.clear();
             
         }
-        else if(wasASet == 2){  // 2 was a false set.
+        else if(wasASet == Verdict.ILLEGAL){
             incomingActionQueue.clear();
             if(!human){  // if NOT HUMAN re-pick from nothing
                 for(Integer num : setsArray){
@@ -185,35 +227,82 @@ public class Player implements Runnable {
      * This method was created tor the tests
      * @return wasASet
      */
-    public int getWasASet(){
+    public Verdict getWasASet(){
         return wasASet;
     }
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
      * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * The AI presses the keys of whole sets: a legal set on the table (with probability env.config.botAccuracy,
+     * after env.config.botReactionMillis), or random slots otherwise, env.config.botKeysPerSecond keys per second
+     * (or as fast as it can if 0).
      */
     private void createArtificialIntelligence() {
         // note: this is a very very smart AI (!)
         aiThread = new Thread(() -> {
             
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " starting.");
+            long keyIntervalMillis = env.config.botKeysPerSecond > 0 ? (long) (1000 / env.config.botKeysPerSecond) : 0;
+            Queue<Integer> plan = new ArrayDeque<>(env.config.featureSize);
             while (!terminate) {
 
-                int slotPick = (int)(12 * Math.random());
-                keyPressed(slotPick);
+                if(plan.isEmpty())
+                    planKeys(plan);
+                if(tryKeyPress(plan.peek())){
+                    plan.poll();
+                    if(keyIntervalMillis > 0) sleepQuietly(keyIntervalMillis);
+                }
+                else
+                    env.clock.yieldTime();
 
             }
             env.logger.log(Level.INFO, "Thread " + Thread.currentThread().getName() + " terminated.");
+            env.clock.exit();
         }, "computer-" + id);
+        env.clock.enter();
         aiThread.start();
     }
 
+    /**
+     * Plans the next key presses of the AI: the slots of a legal set on the table, or random slots.
+     * @param plan - the queue to add the slots to.
+     */
+    private void planKeys(Queue<Integer> plan){
+        if(Math.random() < env.config.botAccuracy){
+            TableSnapshot board = table.snapshot();
+            List<Integer> cards = new ArrayList<>(env.config.tableSize);
+            for(int card : board.cards())
+                cards.add(card);
+            List<int[]> sets = env.util.findSets(cards, 1);
+            if(!sets.isEmpty()){
+                if(env.config.botReactionMillis > 0) sleepQuietly(env.config.botReactionMillis);
+                board = table.snapshot();
+                for(int card : sets.get(0)){
+                    int slot = board.slot(card);
+                    if(slot != TableSnapshot.NONE) plan.add(slot); // the card might have been removed meanwhile
+                }
+                if(!plan.isEmpty()) return;
+            }
+        }
+        while(plan.size() < env.config.featureSize){
+            int slotPick = (int)(env.config.tableSize * Math.random());
+            if(!plan.contains(slotPick)) plan.add(slotPick);
+        }
+    }
+
+    private void sleepQuietly(long millis){
+        try {
+            env.clock.sleep(millis);
+        } catch (InterruptedException ignored) {}
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate(){
         terminate = true;
+        incomingActionQueue.close();  // take care if the player wait for the queue to be not empthy.
         if(!human){
             try {
                 aiThread.join();
@@ -224,22 +313,27 @@ public class Player implements Runnable {
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. It never blocks (it is called on the Swing event dispatch thread).
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {   
-        if(!frozen && !waitToBeChecked && !Dealer.reshuffleNow){  // if the player is frozen we ingnore his "moves"
+        tryKeyPress(slot);
+    }
 
-                synchronized(this){
-                    if(incomingActionQueue.size() < 3){
-                        incomingActionQueue.add(slot);
-                        this.notifyAll();
-                    }
-                }
-                
+    /**
+     * Takes a key press, unless it is ignored.
+     * @param slot - the slot corresponding to the key pressed.
+     * @return true iff the key press was taken.
+     */
+    private boolean tryKeyPress(int slot) {
+        if(!frozen && !waitToBeChecked && !dealer.reshuffleNow){  // if the player is frozen we ingnore his "moves"
+            if(incomingActionQueue.offer(slot)){
+                env.metrics.action();
+                return true;
             }
-
+        }
+        return false;
     }
 
     /**
@@ -258,14 +352,14 @@ public class Player implements Runnable {
      */
     public synchronized void penalty() {
 
-        if(wasASet == 1){  // 1 was a succed
+        if(wasASet == Verdict.LEGAL){
         	setsArray.clear();  // clear both setsArray and incoming actions.
         	incomingActionQueue.clear();
         	goToFreeze(env.config.pointFreezeMillis);
-            wasASet = 0;
+            wasASet = Verdict.NONE;
             
         }
-        else if(wasASet == 2){  // 2 was a false set.
+        else if(wasASet == Verdict.ILLEGAL){
             incomingActionQueue.clear();
         	goToFreeze(env.config.penaltyFreezeMillis);
             if(!human){  // if NOT HUMAN re-pick from nothing
@@ -274,7 +368,7 @@ public class Player implements Runnable {
                 }
                 setsArray.clear();
             }
-            wasASet = 0;
+            wasASet = Verdict.NONE;
         	
         }
     }
@@ -284,13 +378,17 @@ public class Player implements Runnable {
      */
     private void goToFreeze(long time){
         frozen = true;
+        env.metrics.frozen(id, time);
+        GameEvents.PlayerFrozen event = GameEvents.isPlayerFrozenEnabled() ? new GameEvents.PlayerFrozen() : null;
+        if(event != null) event.begin();
+        long requested = time;
         long timeSpane = Math.min(100, time / 100) + 1;
         while(time >=0){
         	env.ui.setFreeze(id, time);
 
             if(time > 0){
                 try {
-                    Thread.sleep(timeSpane);
+                    env.clock.sleep(timeSpane);
                 } catch (InterruptedException e) {}
             }
 	        time -= timeSpane;
@@ -298,6 +396,11 @@ public class Player implements Runnable {
         }
         env.ui.setFreeze(id, time - 1);
         frozen = false;
+        if(event != null && event.shouldCommit()){
+            event.player = id;
+            event.requestedMillis = requested;
+            event.commit();
+        }
     }
 
     /**
@@ -316,14 +419,14 @@ public class Player implements Runnable {
     /**
      * @return incomingActionQueue
      */
-    public Queue<Integer> getIncomingActionQueue(){
+    public InputBuffer getIncomingActionQueue(){
         return incomingActionQueue;
     }
     /**
-     * @param i is the anser the dealer send after checking the player set
+     * @param verdict is the anser the dealer send after checking the player set
      */
-    public void setWasASet(int i){
-        wasASet = i;
+    public void setWasASet(Verdict verdict){
+        wasASet = verdict;
     }
 
     /**
@@ -0,0 +1,35 @@
+package bguspl.set.ex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chooses cards uniformly at random.
+ */
+public class RandomDealStrategy implements DealStrategy {
+
+    @Override
+    public List<Integer> choose(List<Integer> tableCards, List<Integer> deck, int count) {
+        return pickRandom(deck, count, new ArrayList<>(count));
+    }
+
+    /**
+     * Adds random cards of the deck to a list of chosen cards.
+     *
+     * @param deck   - the cards to choose from.
+     * @param count  - the number of cards the list should have.
+     * @param chosen - the chosen cards so far (all from the deck).
+     * @return - chosen, with random cards of the deck that were not chosen yet, up to count cards.
+     */
+    static List<Integer> pickRandom(List<Integer> deck, int count, List<Integer> chosen) {
+        List<Integer> left = new ArrayList<>(deck);
+        left.removeAll(chosen);
+        while (chosen.size() < count && !left.isEmpty()) {
+            int cardPickIndex = (int) (left.size() * Math.random()); // generate card pick in range (0-left.size -1)
+            chosen.add(left.get(cardPickIndex));
+            left.set(cardPickIndex, left.get(left.size() - 1));
+            left.remove(left.size() - 1);
+        }
+        return chosen;
+    }
+}
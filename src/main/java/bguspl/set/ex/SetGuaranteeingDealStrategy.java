@@ -0,0 +1,57 @@
+package bguspl.set.ex;
+
+import bguspl.set.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Chooses cards so the table has a legal set whenever the deck allows it, so the players never sit in front of a
+ * dead table until the turn times out. If the table already has a set the cards are chosen at random; otherwise the
+ * cards of a set (with as many of its cards already on the table as possible, since the set search goes through the
+ * table cards first) are chosen, and the rest at random.
+ */
+public class SetGuaranteeingDealStrategy implements DealStrategy {
+
+    private final Util util;
+
+    public SetGuaranteeingDealStrategy(Util util) {
+        this.util = util;
+    }
+
+    @Override
+    public List<Integer> choose(List<Integer> tableCards, List<Integer> deck, int count) {
+        List<Integer> chosen = new ArrayList<>(count);
+        if (count > 0 && !util.hasSet(tableCards)) {
+            // shuffled, so different sets are chosen from game to game
+            List<Integer> table = new ArrayList<>(tableCards);
+            List<Integer> left = new ArrayList<>(deck);
+            Collections.shuffle(table);
+            Collections.shuffle(left);
+            Set<Integer> fromDeck = new HashSet<>(left);
+            List<Integer> cards = new ArrayList<>(table.size() + left.size());
+            cards.addAll(table);
+            cards.addAll(left);
+
+            Optional<int[]> set = util.streamSets(cards)
+                    .filter(candidate -> countFrom(candidate, fromDeck) <= count)
+                    .findFirst();
+            set.ifPresent(candidate -> {
+                for (int card : candidate)
+                    if (fromDeck.contains(card)) chosen.add(card);
+            });
+        }
+        return RandomDealStrategy.pickRandom(deck, count, chosen);
+    }
+
+    private static int countFrom(int[] set, Set<Integer> cards) {
+        int count = 0;
+        for (int card : set)
+            if (cards.contains(card)) ++count;
+        return count;
+    }
+}
@@ -1,16 +1,19 @@
 package bguspl.set.ex;
 
+import bguspl.set.CardCatalog;
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
 
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Objects;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
+ * The arrays are changed under the table lock; after every change a new immutable snapshot of them is published,
+ * which readers use instead of locking (see snapshot()).
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
@@ -19,8 +22,8 @@ public class Table {
     /**
      * This is an array of lists - represent 2-D array of slot/tokens.
      */
-     private List<Integer>[] token = new List[12];
- 
+    private final List<Integer>[] token;
+
     /**
      * The game environment object.
      */
@@ -36,6 +39,21 @@ public class Table {
      */
     protected final Integer[] cardToSlot; // slot per card (if any)
 
+    /**
+     * The version of each slot, incremented whenever a card is placed in it or removed from it.
+     */
+    private final long[] versions;
+
+    /**
+     * The number of changes made to the table.
+     */
+    private long version = 0;
+
+    /**
+     * The current state of the table, replaced (never changed) on every change.
+     */
+    private volatile TableSnapshot snapshot;
+
     /**
      * Constructor for testing.
      *
@@ -48,10 +66,13 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
+        this.versions = new long[slotToCard.length];
 
-        for(int i = 0; i < 12; i++){
+        this.token = new List[slotToCard.length];
+        for(int i = 0; i < token.length; i++){
             this.token[i] = new ArrayList<Integer>();
         }
+        publish();
     }
 
     /**
@@ -68,12 +89,20 @@ public class Table {
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        CardCatalog catalog = env.config.catalog;
+        TableSnapshot board = snapshot;
+        List<Integer> deck = Arrays.stream(board.cards()).boxed().collect(Collectors.toList());
+        env.util.findAllSets(deck).forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+            List<Integer> slots = Arrays.stream(set).mapToObj(board::slot).sorted().collect(Collectors.toList());
+            sb.append("slots: ").append(slots).append(" features: [");
+            for (int i = 0; i < set.length; i++) {  // same format as Arrays.deepToString of the features.
+                sb.append(i == 0 ? "[" : ", [");
+                for (int feature = 0; feature < catalog.featureCount; feature++)
+                    sb.append(feature == 0 ? "" : ", ").append(catalog.feature(set[i], feature));
+                sb.append(']');
+            }
+            System.out.println(sb.append(']'));
         });
     }
 
@@ -97,15 +126,28 @@ public class Table {
      *
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
+    public void placeCard(int card, int slot) {
+        GameEvents.CardPlaced event = GameEvents.isCardPlacedEnabled() ? new GameEvents.CardPlaced() : null;
+        if (event != null) event.begin();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);  // not holding the table lock, so players can place tokens
         } catch (InterruptedException ignored) {}
 
-        cardToSlot[card] = slot; // update to our arrays.
-        slotToCard[slot] = card;
+        long lockStart = System.nanoTime();
+        synchronized (this) {
+            env.metrics.tableLockWait(System.nanoTime() - lockStart);
+            cardToSlot[card] = slot; // update to our arrays.
+            slotToCard[slot] = card;
+            ++versions[slot];
+            publish();
 
-        env.ui.placeCard(card, slot);  // update the visualization.
+            env.ui.placeCard(card, slot);  // update the visualization.
+        }
+        if (event != null && event.shouldCommit()) {
+            event.card = card;
+            event.slot = slot;
+            event.commit();
+        }
     }
 
     /**
@@ -113,19 +155,73 @@ public class Table {
      * @param slot - the slot from which to remove the card.
      * @post the card that was at the assigned slot was removed
      */
-    public synchronized void removeCard(int slot) {
+    public void removeCard(int slot) {
+        GameEvents.CardRemoved event = GameEvents.isCardRemovedEnabled() ? new GameEvents.CardRemoved() : null;
+        if (event != null) event.begin();
         try {
-            Thread.sleep(env.config.tableDelayMillis);
+            env.clock.sleep(env.config.tableDelayMillis);
         } catch (InterruptedException ignored) {}
 
-        int card = slotToCard[slot];  // correcting our 2 arrays.
-        slotToCard[slot] = null;
-        cardToSlot[card] = null;
+        int card;
+        long lockStart = System.nanoTime();
+        synchronized (this) {
+            env.metrics.tableLockWait(System.nanoTime() - lockStart);
+            card = slotToCard[slot];  // correcting our 2 arrays.
+            slotToCard[slot] = null;
+            cardToSlot[card] = null;
+            ++versions[slot];
+            publish();
+
+            token[slot].clear();  // clear our 2D list of tokens.
+
+            env.ui.removeTokens(slot);  // removing the card and token from the screen.
+            env.ui.removeCard(slot);
+        }
+        if (event != null && event.shouldCommit()) {
+            event.card = card;
+            event.slot = slot;
+            event.commit();
+        }
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the version of the slot. It changes whenever the card in the slot is placed or removed, so a token
+     *           placed at some version is stale once the version changes.
+     */
+    public long version(int slot) {
+        return snapshot.version(slot);
+    }
+
+    /**
+     * Checks that a claimed set is still on the table (tokens are only placed on slots with cards).
+     * @param slots    - the slots of the set.
+     * @param versions - the versions of the slots when the tokens were placed on them.
+     * @return - true iff no card of the set was removed or replaced since.
+     */
+    public boolean isCurrent(int[] slots, long[] versions) {
+        TableSnapshot board = snapshot;
+        for (int i = 0; i < slots.length; i++)
+            if (board.version(slots[i]) != versions[i])
+                return false;
+        return true;
+    }
 
-        token[slot].clear();  // clear our 2D list of tokens.
+    /**
+     * @return - the current state of the table. It never changes, so it can be read without locking.
+     */
+    public TableSnapshot snapshot() {
+        return snapshot;
+    }
 
-        env.ui.removeTokens(slot);  // removing the card and token from the screen.
-        env.ui.removeCard(slot);
+    /**
+     * Publishes a snapshot of the current state of the table (called under the table lock, after every change).
+     */
+    private void publish() {
+        int[] slots = new int[slotToCard.length];
+        for (int i = 0; i < slots.length; i++)
+            slots[i] = slotToCard[i] == null ? TableSnapshot.NONE : slotToCard[i];
+        snapshot = new TableSnapshot(++version, slots, versions.clone());
     }
 
     /**
@@ -134,12 +230,32 @@ public class Table {
      * @param slot   - the slot on which to place the token.
      * @post there is a token from the assigned player in the assigend slot.
      */
-    public void placeToken(int player, int slot) {
+    public synchronized void placeToken(int player, int slot) {
     	
     	token[slot].add(player);  // add the playerId to out 2D list..	
         env.ui.placeToken(player, slot); // place token with the ui.
     }
 
+    /**
+     * Places a player token on a grid slot, unless its card was removed or replaced since the player saw it.
+     * @param player  - the player the token belongs to.
+     * @param slot    - the slot on which to place the token.
+     * @param version - the version of the slot when the player chose it (see version(slot)).
+     * @return        - true iff the token was placed (false if the slot is empty or at another version).
+     * @post if true is returned, there is a token from the assigned player in the assigend slot.
+     */
+    public boolean placeToken(int player, int slot, long version) {
+        long lockStart = System.nanoTime();
+        synchronized(this){
+            env.metrics.tableLockWait(System.nanoTime() - lockStart);
+            if(slotToCard[slot] == null || versions[slot] != version){  // checked under the lock that changes the card
+                return false;
+            }
+            placeToken(player, slot);
+            return true;
+        }
+    }
+
     /**
      * Removes a token of a player from a grid slot.
      * @param player - the player the token belongs to.
@@ -147,13 +263,17 @@ public class Table {
      * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot) {
-        if(token[slot].contains(player)){  // if the token is exist remove it.
-        	token[slot].remove(token[slot].indexOf(player));         
-        	
-            env.ui.removeToken(player, slot);
-            return true;
+        long lockStart = System.nanoTime();
+        synchronized(this){
+            env.metrics.tableLockWait(System.nanoTime() - lockStart);
+            if(token[slot].contains(player)){  // if the token is exist remove it.
+                token[slot].remove(token[slot].indexOf(player));
+
+                env.ui.removeToken(player, slot);
+                return true;
+            }
+            return false;
         }
-        return false;
     }
 
     /**
@@ -0,0 +1,94 @@
+package bguspl.set.ex;
+
+/**
+ * An immutable view of the cards on the table, as published by Table after every change. Readers (players, hints,
+ * the dealer checking a claim) take a snapshot and read a consistent board from it, without locking the table.
+ * Only the slots are copied, so publishing a snapshot costs O(table size) regardless of the deck size.
+ *
+ * @inv card(x) == y iff slot(y) == x
+ */
+public final class TableSnapshot {
+
+    /**
+     * Marks an empty slot, or a card that is not on the table.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The number of changes made to the table before this snapshot.
+     */
+    public final long version;
+
+    private final int[] slotToCard;
+    private final long[] slotVersions;
+    private final int cards;
+
+    /**
+     * @param version      - the number of changes made to the table.
+     * @param slotToCard   - the card in each slot (NONE if none). The snapshot takes ownership of the arrays.
+     * @param slotVersions - the version of each slot (see Table.version).
+     */
+    TableSnapshot(long version, int[] slotToCard, long[] slotVersions) {
+        this.version = version;
+        this.slotToCard = slotToCard;
+        this.slotVersions = slotVersions;
+        int cards = 0;
+        for (int card : slotToCard)
+            if (card != NONE)
+                ++cards;
+        this.cards = cards;
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the card in the slot, or NONE if the slot is empty.
+     */
+    public int card(int slot) {
+        return slotToCard[slot];
+    }
+
+    /**
+     * @param card - the card.
+     * @return - the slot of the card, or NONE if it is not on the table (a scan of the slots, there are few).
+     */
+    public int slot(int card) {
+        for (int slot = 0; slot < slotToCard.length; slot++)
+            if (slotToCard[slot] == card)
+                return slot;
+        return NONE;
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the version of the slot (see Table.version).
+     */
+    public long version(int slot) {
+        return slotVersions[slot];
+    }
+
+    /**
+     * @return - the number of slots.
+     */
+    public int slots() {
+        return slotToCard.length;
+    }
+
+    /**
+     * @return - the number of cards on the table.
+     */
+    public int countCards() {
+        return cards;
+    }
+
+    /**
+     * @return - a new array of the cards on the table, by slot order.
+     */
+    public int[] cards() {
+        int[] onTable = new int[cards];
+        int i = 0;
+        for (int card : slotToCard)
+            if (card != NONE)
+                onTable[i++] = card;
+        return onTable;
+    }
+}
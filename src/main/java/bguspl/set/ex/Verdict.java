@@ -0,0 +1,22 @@
+package bguspl.set.ex;
+
+/**
+ * The dealer's answer to a claimed set.
+ */
+public enum Verdict {
+
+    /**
+     * No answer: the claim was not checked (it was cancelled), or there is no claim.
+     */
+    NONE,
+
+    /**
+     * The set was legal: the player gets a point.
+     */
+    LEGAL,
+
+    /**
+     * The set was not legal: the player is penalized.
+     */
+    ILLEGAL
+}
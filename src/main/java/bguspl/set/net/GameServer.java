@@ -0,0 +1,428 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import bguspl.set.ThreadLogger;
+import bguspl.set.UserInterface;
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * A non-blocking game server for remote players (see Protocol). A single selector thread accepts connections,
+ * hands the key presses of each connection over to the player it joined as (see KeyDispatcher), and sends every ui
+ * event to all the connections. Ui events are encoded once, by the game thread that raised them, and sent in batches
+ * by the selector thread, so the game threads never wait for the network.
+ * A new connection is sent a snapshot of the whole state first (RESYNC), so it can join in the middle of a game.
+ * A player is controlled by a single connection at a time.
+ * The ui events are also passed to the next user interface (if any), so the server can run alongside it.
+ */
+public class GameServer implements UserInterface, Runnable {
+
+    /**
+     * The maximum number of bytes waiting to be sent to a connection before it is dropped as too slow.
+     */
+    private static final int MAX_PENDING_BYTES = 64 * 1024;
+
+    /**
+     * The number of pending connections the server socket queues (bursts of remote clients connecting are common).
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * The number of key presses waiting to be dispatched to the players before new ones are dropped.
+     */
+    private static final int KEY_QUEUE_CAPACITY = 1024;
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+    private final UserInterface next;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ThreadLogger thread;
+    private final KeyDispatcher dispatcher;
+
+    /**
+     * The encoded ui events waiting to be sent to all connections.
+     */
+    private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The state of the game, for snapshots (guarded by this, together with adding to the outbox).
+     */
+    private final GameState state;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    /**
+     * The open connections (used by the selector thread only).
+     */
+    private final Set<Connection> connections = new LinkedHashSet<>();
+
+    /**
+     * The connection controlling each player, or null (used by the selector thread only).
+     */
+    private final Connection[] seats;
+
+    private volatile boolean terminate;
+
+    /**
+     * @param logger  - the logger.
+     * @param config  - the game configuration.
+     * @param players - the players (key presses are dispatched to human players only).
+     * @param port    - the port to listen on (0 for any free port).
+     * @param next    - the user interface to pass the ui events on to (may be null).
+     * @throws IOException - if the server socket cannot be opened.
+     */
+    public GameServer(Logger logger, Config config, Player[] players, int port, UserInterface next) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        this.next = next;
+        state = new GameState(config);
+        seats = new Connection[players.length];
+        dispatcher = new KeyDispatcher(logger, players, KEY_QUEUE_CAPACITY);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new ThreadLogger(this, "game-server", logger);
+    }
+
+    /**
+     * Starts the selector thread (and the thread dispatching the key presses).
+     */
+    public void start() {
+        dispatcher.start();
+        thread.startWithLog();
+    }
+
+    /**
+     * @return - the port the server listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * The selector thread starts here.
+     */
+    @Override
+    public void run() {
+        logger.severe("game server listening on port " + port());
+        try {
+            while (!terminate) {
+                selector.select();
+                wakeupPending.set(false);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable()) connection.read();
+                        if (key.isValid() && key.isWritable()) connection.flush();
+                    }
+                }
+
+                sendOutbox();
+            }
+        } catch (IOException e) {
+            logger.severe("game server failed: " + e);
+        } finally {
+            for (Connection connection : new ArrayList<>(connections))
+                connection.close();
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            synchronized (this) {
+                sendOutbox(); // the events before the snapshot, so the connection gets every later event after it
+                connections.add(connection);
+                connection.send(state.snapshot());
+            }
+        }
+    }
+
+    /**
+     * Sends all the encoded ui events to all the connections, as a single batch.
+     */
+    private void sendOutbox() {
+        if (outbox.isEmpty()) return;
+
+        List<ByteBuffer> messages = new ArrayList<>();
+        int size = 0;
+        for (ByteBuffer message; (message = outbox.poll()) != null; size += message.remaining())
+            messages.add(message);
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        for (ByteBuffer message : messages)
+            batch.put(message);
+        batch.flip();
+
+        ByteBuffer readOnlyBatch = batch.asReadOnlyBuffer();
+        for (Connection connection : new ArrayList<>(connections))
+            connection.send(readOnlyBatch.duplicate());
+    }
+
+    /**
+     * Queues an encoded ui event to be sent to all connections.
+     * @pre the caller holds the lock of this (and updated the state accordingly).
+     */
+    private void broadcast(ByteBuffer message) {
+        outbox.add(message);
+        if (wakeupPending.compareAndSet(false, true))
+            selector.wakeup();
+    }
+
+    /**
+     * A connection of a remote client.
+     */
+    private class Connection {
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private final ByteBuffer in = ByteBuffer.allocate(64 * Protocol.CLIENT_MESSAGE_SIZE);
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        private int pendingBytes = 0;
+        private int player = -1;
+
+        private Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read() {
+            try {
+                if (channel.read(in) < 0) {
+                    close();
+                    return;
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+
+            in.flip();
+            while (in.remaining() >= Protocol.CLIENT_MESSAGE_SIZE) {
+                byte opcode = in.get();
+                int value = in.getShort();
+                if (opcode == Protocol.JOIN) join(value);
+                else if (opcode == Protocol.KEY && player >= 0 && value >= 0 && value < config.tableSize)
+                    dispatcher.offer(player, value);  // the player might block, the selector thread must not
+            }
+            in.compact();
+        }
+
+        private void join(int player) {
+            boolean accepted = player >= 0 && player < config.humanPlayers && players[player] != null
+                    && (seats[player] == null || seats[player] == this);
+            if (!accepted) {
+                send(Protocol.slotMessage(Protocol.REJECTED, player));
+                return;
+            }
+
+            leave();
+            seats[player] = this;
+            this.player = player;
+            logger.severe("remote client " + address() + " joined as player " + (player + 1));
+            send(Protocol.slotMessage(Protocol.JOINED, player));
+        }
+
+        /**
+         * Frees the player this connection controls (if any).
+         */
+        private void leave() {
+            if (player >= 0 && seats[player] == this) seats[player] = null;
+            player = -1;
+        }
+
+        private void send(ByteBuffer message) {
+            pending.add(message);
+            pendingBytes += message.remaining();
+            if (pendingBytes > MAX_PENDING_BYTES) {
+                logger.severe("dropping slow remote client " + address());
+                close();
+                return;
+            }
+            flush();
+        }
+
+        private void flush() {
+            try {
+                while (!pending.isEmpty()) {
+                    ByteBuffer message = pending.peek();
+                    pendingBytes -= channel.write(message);
+                    if (message.hasRemaining()) break;
+                    pending.poll();
+                }
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            key.interestOps(pending.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private String address() {
+            try {
+                return String.valueOf(channel.getRemoteAddress());
+            } catch (IOException e) {
+                return "(closed)";
+            }
+        }
+
+        private void close() {
+            leave();
+            connections.remove(this);
+            if (key != null) key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (next != null) next.placeCard(card, slot);
+        synchronized (this) {
+            state.placeCard(card, slot);
+            broadcast(Protocol.placeCard(card, slot));
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (next != null) next.removeCard(slot);
+        synchronized (this) {
+            state.removeCard(slot);
+            broadcast(Protocol.slotMessage(Protocol.REMOVE_CARD, slot));
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (next != null) next.placeToken(player, slot);
+        synchronized (this) {
+            state.placeToken(player, slot);
+            broadcast(Protocol.playerSlotMessage(Protocol.PLACE_TOKEN, player, slot));
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        if (next != null) next.removeTokens();
+        synchronized (this) {
+            state.removeTokens();
+            broadcast(Protocol.removeAllTokens());
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (next != null) next.removeTokens(slot);
+        synchronized (this) {
+            state.removeTokens(slot);
+            broadcast(Protocol.slotMessage(Protocol.REMOVE_TOKENS, slot));
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (next != null) next.removeToken(player, slot);
+        synchronized (this) {
+            state.removeToken(player, slot);
+            broadcast(Protocol.playerSlotMessage(Protocol.REMOVE_TOKEN, player, slot));
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (next != null) next.setCountdown(millies, warn);
+        synchronized (this) {
+            ByteBuffer timer = Protocol.countdown(millies, warn);
+            state.setTimer(timer);
+            broadcast(timer);
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (next != null) next.setElapsed(millies);
+        synchronized (this) {
+            ByteBuffer timer = Protocol.elapsed(millies);
+            state.setTimer(timer);
+            broadcast(timer);
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (next != null) next.setFreeze(player, millies);
+        synchronized (this) {
+            state.setFreeze(player, millies);
+            broadcast(Protocol.freeze(player, millies));
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (next != null) next.setScore(player, score);
+        synchronized (this) {
+            state.setScore(player, score);
+            broadcast(Protocol.score(player, score));
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (next != null) next.announceWinner(players);
+        synchronized (this) {
+            state.announceWinner(players);
+            broadcast(Protocol.winners(players));
+        }
+    }
+
+    /**
+     * Stops the selector thread and the key dispatching, and closes all connections (ui events still pending are
+     * sent if the connections can take them without blocking).
+     */
+    @Override
+    public void dispose() {
+        if (next != null) next.dispose();
+        terminate = true;
+        selector.wakeup();
+        try {
+            thread.joinWithLog();
+        } catch (InterruptedException ignored) {}
+        dispatcher.stop();
+    }
+}
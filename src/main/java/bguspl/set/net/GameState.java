@@ -0,0 +1,103 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The state of the game as the remote clients see it, kept up to date from the ui events so that a client that
+ * connects in the middle of a game can be sent a snapshot of the whole state (see Protocol.RESYNC).
+ * Not thread safe, the owner guards it with its own lock.
+ */
+final class GameState {
+
+    private final int[] cards;
+    private final BitSet[] tokens;
+    private final long[] freezes;
+    private final int[] scores;
+    private ByteBuffer timer = null;
+    private int[] winners = null;
+
+    GameState(Config config) {
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new BitSet[config.tableSize];
+        for (int slot = 0; slot < tokens.length; slot++)
+            tokens[slot] = new BitSet(config.players);
+        freezes = new long[config.players];
+        scores = new int[config.players];
+    }
+
+    void placeCard(int card, int slot) {
+        cards[slot] = card;
+    }
+
+    void removeCard(int slot) {
+        cards[slot] = -1;
+    }
+
+    void placeToken(int player, int slot) {
+        tokens[slot].set(player);
+    }
+
+    void removeTokens() {
+        for (BitSet slotTokens : tokens)
+            slotTokens.clear();
+    }
+
+    void removeTokens(int slot) {
+        tokens[slot].clear();
+    }
+
+    void removeToken(int player, int slot) {
+        tokens[slot].clear(player);
+    }
+
+    /**
+     * @param timer - the last COUNTDOWN or ELAPSED message.
+     */
+    void setTimer(ByteBuffer timer) {
+        this.timer = timer.duplicate();
+    }
+
+    void setFreeze(int player, long millies) {
+        freezes[player] = millies;
+    }
+
+    void setScore(int player, int score) {
+        scores[player] = score;
+    }
+
+    void announceWinner(int[] players) {
+        winners = players.clone();
+    }
+
+    /**
+     * Encodes a snapshot of the whole state.
+     * @return - a RESYNC message followed by the messages that rebuild the state from scratch.
+     */
+    ByteBuffer snapshot() {
+        List<ByteBuffer> messages = new ArrayList<>();
+        messages.add(Protocol.resync());
+        for (int slot = 0; slot < cards.length; slot++) {
+            if (cards[slot] >= 0) messages.add(Protocol.placeCard(cards[slot], slot));
+            for (int player = tokens[slot].nextSetBit(0); player >= 0; player = tokens[slot].nextSetBit(player + 1))
+                messages.add(Protocol.playerSlotMessage(Protocol.PLACE_TOKEN, player, slot));
+        }
+        for (int player = 0; player < scores.length; player++) {
+            messages.add(Protocol.score(player, scores[player]));
+            if (freezes[player] > 0) messages.add(Protocol.freeze(player, freezes[player]));
+        }
+        if (timer != null) messages.add(timer.duplicate());
+        if (winners != null) messages.add(Protocol.winners(winners));
+
+        ByteBuffer snapshot = ByteBuffer.allocate(messages.stream().mapToInt(ByteBuffer::remaining).sum());
+        messages.forEach(snapshot::put);
+        snapshot.flip();
+        return snapshot;
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set.net;
+
+import bguspl.set.ThreadLogger;
+import bguspl.set.ex.Player;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * Hands the key presses of remote players over from the selector thread to the players, on a thread of its own: a
+ * player may block a key press (e.g. while it is frozen), and the selector thread must never block, or every
+ * connection would stall. If the players fall behind by more than the capacity, new key presses are dropped.
+ */
+class KeyDispatcher implements Runnable {
+
+    private final Player[] players;
+    private final BlockingQueue<Integer> presses;
+    private final ThreadLogger thread;
+
+    /**
+     * @param logger   - the logger.
+     * @param players  - the players to dispatch the key presses to.
+     * @param capacity - the maximum number of key presses waiting to be dispatched.
+     */
+    KeyDispatcher(Logger logger, Player[] players, int capacity) {
+        this.players = players;
+        presses = new ArrayBlockingQueue<>(capacity);
+        thread = new ThreadLogger(this, "game-server-keys", logger);
+        thread.setDaemon(true);  // a player might never let go of a key press, it must not keep the game running
+    }
+
+    void start() {
+        thread.startWithLog();
+    }
+
+    /**
+     * Queues a key press, without blocking.
+     * @param player - the player id.
+     * @param slot   - the slot of the key.
+     * @return - true iff the key press was queued (false if it was dropped).
+     */
+    boolean offer(int player, int slot) {
+        return presses.offer(player << 16 | slot);
+    }
+
+    /**
+     * The dispatching thread starts here.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                int press = presses.take();
+                players[press >>> 16].keyPressed(press & 0xffff);
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Stops dispatching (key presses still waiting are dropped).
+     */
+    void stop() {
+        thread.interrupt();
+    }
+}
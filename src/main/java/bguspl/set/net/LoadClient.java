@@ -0,0 +1,207 @@
+package bguspl.set.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A load generator for the game server: opens many connections from a single thread, joins the first ones as the
+ * human players (a player is controlled by a single connection, the other connections only watch), presses random
+ * keys at a fixed rate on every joined connection and counts the messages received.
+ *
+ * Usage: LoadClient [host] [port] [connections] [seconds] [keys per second per connection] [human players] [slots]
+ */
+public class LoadClient {
+
+    private final InetSocketAddress address;
+    private final int connectionCount;
+    private final long durationMillis;
+    private final double keysPerSecond;
+    private final int humanPlayers;
+    private final int slots;
+
+    private final List<Connection> connections = new ArrayList<>();
+    private long messagesReceived = 0;
+    private long bytesReceived = 0;
+    private long keysSent = 0;
+    private int connected = 0;
+    private int joined = 0;
+    private int dropped = 0;
+
+    public LoadClient(InetSocketAddress address, int connectionCount, long durationMillis, double keysPerSecond,
+                      int humanPlayers, int slots) {
+        this.address = address;
+        this.connectionCount = connectionCount;
+        this.durationMillis = durationMillis;
+        this.keysPerSecond = keysPerSecond;
+        this.humanPlayers = humanPlayers;
+        this.slots = slots;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 7777;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 30;
+        double keysPerSecond = args.length > 4 ? Double.parseDouble(args[4]) : 1;
+        int humanPlayers = args.length > 5 ? Integer.parseInt(args[5]) : 2;
+        int slots = args.length > 6 ? Integer.parseInt(args[6]) : 12;
+
+        LoadClient client = new LoadClient(new InetSocketAddress(host, port), connections, seconds * 1000,
+                keysPerSecond, humanPlayers, slots);
+        client.run();
+        System.out.println(client.summary());
+    }
+
+    /**
+     * Runs the load until the duration is over.
+     */
+    public void run() throws IOException {
+        try (Selector selector = Selector.open()) {
+            for (int i = 0; i < connectionCount; i++) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.connect(address);
+                Connection connection = new Connection(channel, i < humanPlayers ? i : -1);
+                channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                connections.add(connection);
+            }
+
+            long start = System.currentTimeMillis();
+            long keyInterval = keysPerSecond > 0 ? (long) (1000 / keysPerSecond) : Long.MAX_VALUE;
+            long nextKeys = start + keyInterval;
+            for (long now = start; now < start + durationMillis; now = System.currentTimeMillis()) {
+                selector.select(Math.max(1, Math.min(nextKeys, start + durationMillis) - now));
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (!key.isValid()) continue;
+                    if (key.isConnectable()) connection.finishConnect(key);
+                    else if (key.isReadable()) connection.read();
+                }
+
+                if (System.currentTimeMillis() >= nextKeys) {
+                    for (Connection connection : connections)
+                        connection.pressKey();
+                    nextKeys += keyInterval;
+                }
+            }
+
+            for (Connection connection : connections)
+                connection.close();
+        }
+    }
+
+    public String summary() {
+        double seconds = durationMillis / 1000.0;
+        return String.format("connections: %d/%d joined: %d dropped: %d keys sent: %d (%.1f/s) messages received: %d "
+                        + "(%.1f/s) bytes received: %d (%.1f KB/s)", connected, connectionCount, joined, dropped,
+                keysSent, keysSent / seconds, messagesReceived, messagesReceived / seconds, bytesReceived,
+                bytesReceived / seconds / 1024);
+    }
+
+    public long messagesReceived() {
+        return messagesReceived;
+    }
+
+    public int connected() {
+        return connected;
+    }
+
+    public int joined() {
+        return joined;
+    }
+
+    /**
+     * A connection to the server.
+     */
+    private class Connection {
+
+        private final SocketChannel channel;
+        private final int player; // -1 for a connection that only watches
+        private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+        private boolean open = false;
+
+        private Connection(SocketChannel channel, int player) {
+            this.channel = channel;
+            this.player = player;
+        }
+
+        private void finishConnect(SelectionKey key) {
+            try {
+                channel.finishConnect();
+                channel.socket().setTcpNoDelay(true);
+                key.interestOps(SelectionKey.OP_READ);
+                open = true;
+                ++connected;
+                if (player >= 0) channel.write(Protocol.clientMessage(Protocol.JOIN, player));
+            } catch (IOException e) {
+                drop();
+            }
+        }
+
+        private void pressKey() {
+            if (!open || player < 0) return;
+            try {
+                ByteBuffer message = Protocol.clientMessage(Protocol.KEY, ThreadLocalRandom.current().nextInt(slots));
+                if (channel.write(message) == message.limit()) // a key press that cannot be sent right away is skipped
+                    ++keysSent;
+            } catch (IOException e) {
+                drop();
+            }
+        }
+
+        private void read() {
+            try {
+                int read = channel.read(in);
+                if (read < 0) {
+                    drop();
+                    return;
+                }
+                bytesReceived += read;
+            } catch (IOException e) {
+                drop();
+                return;
+            }
+
+            in.flip();
+            while (in.hasRemaining()) {
+                byte opcode = in.get(in.position());
+                int size = opcode == Protocol.WINNERS
+                        ? (in.remaining() >= 3 ? 3 + 2 * in.getShort(in.position() + 1) : Integer.MAX_VALUE)
+                        : Protocol.messageSize(opcode);
+                if (size < 0) { // unknown message, the stream cannot be parsed any further
+                    drop();
+                    return;
+                }
+                if (in.remaining() < size) break;
+                if (opcode == Protocol.JOINED) ++joined;
+                in.position(in.position() + size);
+                ++messagesReceived;
+            }
+            in.compact();
+        }
+
+        private void drop() {
+            if (open) ++dropped;
+            close();
+        }
+
+        private void close() {
+            open = false;
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package bguspl.set.net;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary protocol between the game server and remote clients. Every message starts with a one byte opcode,
+ * followed by fixed size big endian fields (the size of a message is known from its opcode, except for WINNERS,
+ * whose player list is prefixed by its length).
+ *
+ * Client to server:
+ *   JOIN   [player:short]             - control the given player (must be a human player that no other client
+ *                                       controls).
+ *   KEY    [slot:short]               - press the key of the given slot (as the joined player).
+ *
+ * Server to client (a snapshot of the whole state, RESYNC, is sent first):
+ *   JOINED            [player:short]
+ *   REJECTED          [player:short]
+ *   PLACE_CARD        [card:int][slot:short]
+ *   REMOVE_CARD       [slot:short]
+ *   PLACE_TOKEN       [player:short][slot:short]
+ *   REMOVE_TOKEN      [player:short][slot:short]
+ *   REMOVE_TOKENS     [slot:short]
+ *   REMOVE_ALL_TOKENS
+ *   COUNTDOWN         [millies:long][warn:byte]
+ *   ELAPSED           [millies:long]
+ *   FREEZE            [player:short][millies:long]
+ *   SCORE             [player:short][score:int]
+ *   WINNERS           [count:short][player:short]*count
+ *   RESYNC                                 - forget the current state, a snapshot of the whole state follows.
+ */
+public final class Protocol {
+
+    // client to server
+    public static final byte JOIN = 1;
+    public static final byte KEY = 2;
+
+    // server to client
+    public static final byte JOINED = 10;
+    public static final byte REJECTED = 11;
+    public static final byte PLACE_CARD = 12;
+    public static final byte REMOVE_CARD = 13;
+    public static final byte PLACE_TOKEN = 14;
+    public static final byte REMOVE_TOKEN = 15;
+    public static final byte REMOVE_TOKENS = 16;
+    public static final byte REMOVE_ALL_TOKENS = 17;
+    public static final byte COUNTDOWN = 18;
+    public static final byte ELAPSED = 19;
+    public static final byte FREEZE = 20;
+    public static final byte SCORE = 21;
+    public static final byte WINNERS = 22;
+    public static final byte RESYNC = 23;
+
+    /**
+     * The size of every client to server message.
+     */
+    public static final int CLIENT_MESSAGE_SIZE = 3;
+
+    private Protocol() {}
+
+    /**
+     * @param opcode - a server to client opcode (other than WINNERS).
+     * @return - the size of the message in bytes (including the opcode), or -1 if the opcode is unknown.
+     */
+    public static int messageSize(byte opcode) {
+        switch (opcode) {
+            case JOINED: case REJECTED: case REMOVE_CARD: case REMOVE_TOKENS: return 3;
+            case PLACE_TOKEN: case REMOVE_TOKEN: return 5;
+            case PLACE_CARD: return 7;
+            case REMOVE_ALL_TOKENS: case RESYNC: return 1;
+            case COUNTDOWN: return 10;
+            case ELAPSED: return 9;
+            case FREEZE: return 11;
+            case SCORE: return 7;
+            default: return -1;
+        }
+    }
+
+    public static ByteBuffer clientMessage(byte opcode, int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(CLIENT_MESSAGE_SIZE);
+        buffer.put(opcode).putShort((short) value).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer slotMessage(byte opcode, int slot) {
+        ByteBuffer buffer = ByteBuffer.allocate(3);
+        buffer.put(opcode).putShort((short) slot).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer playerSlotMessage(byte opcode, int player, int slot) {
+        ByteBuffer buffer = ByteBuffer.allocate(5);
+        buffer.put(opcode).putShort((short) player).putShort((short) slot).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer placeCard(int card, int slot) {
+        ByteBuffer buffer = ByteBuffer.allocate(7);
+        buffer.put(PLACE_CARD).putInt(card).putShort((short) slot).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer removeAllTokens() {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        buffer.put(REMOVE_ALL_TOKENS).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer resync() {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        buffer.put(RESYNC).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer countdown(long millies, boolean warn) {
+        ByteBuffer buffer = ByteBuffer.allocate(10);
+        buffer.put(COUNTDOWN).putLong(millies).put((byte) (warn ? 1 : 0)).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer elapsed(long millies) {
+        ByteBuffer buffer = ByteBuffer.allocate(9);
+        buffer.put(ELAPSED).putLong(millies).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer freeze(int player, long millies) {
+        ByteBuffer buffer = ByteBuffer.allocate(11);
+        buffer.put(FREEZE).putShort((short) player).putLong(millies).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer score(int player, int score) {
+        ByteBuffer buffer = ByteBuffer.allocate(7);
+        buffer.put(SCORE).putShort((short) player).putInt(score).flip();
+        return buffer;
+    }
+
+    public static ByteBuffer winners(int[] players) {
+        ByteBuffer buffer = ByteBuffer.allocate(3 + 2 * players.length);
+        buffer.put(WINNERS).putShort((short) players.length);
+        for (int player : players)
+            buffer.putShort((short) player);
+        buffer.flip();
+        return buffer;
+    }
+}
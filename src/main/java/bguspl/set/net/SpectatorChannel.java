@@ -0,0 +1,369 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import bguspl.set.ThreadLogger;
+import bguspl.set.UserInterface;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Streams the game to spectators (see Protocol, spectators only receive). Every ui event is encoded once, as a
+ * delta, and appended to a shared ring buffer. Each spectator only has a cursor into the ring, and a single selector
+ * thread copies the ring to the spectators' sockets from their cursors. A spectator that falls too far behind (or
+ * just subscribed) skips to the head of the ring, after a snapshot of the whole state (RESYNC).
+ * The ui events are also passed to the next user interface (if any), so the channel can run alongside it.
+ */
+public class SpectatorChannel implements UserInterface, Runnable {
+
+    /**
+     * The size of the ring buffer (a power of 2).
+     */
+    private static final int RING_SIZE = 1 << 20;
+
+    /**
+     * A spectator that lags behind by more than this many bytes is resynchronized.
+     */
+    private static final int MAX_LAG = RING_SIZE / 2;
+
+    /**
+     * The number of pending connections the server socket queues (bursts of spectators connecting are common).
+     */
+    private static final int BACKLOG = 1024;
+
+    private final Logger logger;
+    private final UserInterface next;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ThreadLogger thread;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+
+    /**
+     * The ring buffer of encoded events: the byte at stream position p is at ring[p % RING_SIZE].
+     */
+    private final byte[] ring = new byte[RING_SIZE];
+
+    /**
+     * The stream position after the last appended event (written under the lock of this).
+     */
+    private volatile long head = 0;
+
+    /**
+     * The state of the game, for snapshots (guarded by this).
+     */
+    private final GameState state;
+
+    /**
+     * The subscribed spectators (used by the selector thread only).
+     */
+    private final Set<Spectator> spectators = new LinkedHashSet<>();
+
+    private int resyncs = 0;
+    private volatile boolean terminate;
+
+    /**
+     * @param logger - the logger.
+     * @param config - the game configuration.
+     * @param port   - the port to listen on (0 for any free port).
+     * @param next   - the user interface to pass the ui events on to (may be null).
+     * @throws IOException - if the server socket cannot be opened.
+     */
+    public SpectatorChannel(Logger logger, Config config, int port, UserInterface next) throws IOException {
+        this.logger = logger;
+        this.next = next;
+
+        state = new GameState(config);
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), BACKLOG);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new ThreadLogger(this, "spectator-channel", logger);
+    }
+
+    /**
+     * Starts the selector thread.
+     */
+    public void start() {
+        thread.startWithLog();
+    }
+
+    /**
+     * @return - the port the channel listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * The selector thread starts here.
+     */
+    @Override
+    public void run() {
+        logger.severe("spectator channel listening on port " + port());
+        try {
+            while (!terminate) {
+                selector.select();
+                wakeupPending.set(false);
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) accept();
+                    else if (key.isReadable()) ((Spectator) key.attachment()).discardInput();
+                }
+
+                for (Spectator spectator : new ArrayList<>(spectators))
+                    spectator.flush();
+            }
+        } catch (IOException e) {
+            logger.severe("spectator channel failed: " + e);
+        } finally {
+            logger.severe("spectator channel closing, " + spectators.size() + " spectators, " + resyncs + " resyncs");
+            for (Spectator spectator : new ArrayList<>(spectators))
+                spectator.close();
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            Spectator spectator = new Spectator(channel);
+            spectator.key = channel.register(selector, SelectionKey.OP_READ, spectator);
+            spectators.add(spectator);
+            spectator.resync();
+        }
+    }
+
+    /**
+     * Appends an encoded event to the ring and wakes up the selector thread to send it.
+     * @pre the caller holds the lock of this (and updated the state accordingly).
+     */
+    private void append(ByteBuffer message) {
+        int size = message.remaining();
+        int start = (int) (head & (RING_SIZE - 1));
+        int first = Math.min(size, RING_SIZE - start);
+        message.get(ring, start, first);
+        message.get(ring, 0, size - first);
+        head += size;
+
+        if (wakeupPending.compareAndSet(false, true))
+            selector.wakeup();
+    }
+
+    /**
+     * A subscribed spectator.
+     */
+    private class Spectator {
+
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer snapshot = null;
+        private long cursor;
+
+        private Spectator(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Skips to the head of the ring, after a snapshot of the state at that point.
+         */
+        private void resync() {
+            synchronized (SpectatorChannel.this) {
+                snapshot = state.snapshot();
+                cursor = head;
+            }
+        }
+
+        /**
+         * Sends as much as the socket takes without blocking.
+         */
+        private void flush() {
+            try {
+                if (snapshot != null) {
+                    channel.write(snapshot);
+                    if (snapshot.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    snapshot = null;
+                }
+
+                long end = head;
+                if (end - cursor > MAX_LAG) {
+                    ++resyncs;
+                    resync();
+                    flush();
+                    return;
+                }
+
+                while (cursor < end) {
+                    long from = cursor;
+                    int start = (int) (from & (RING_SIZE - 1));
+                    int length = (int) Math.min(end - from, RING_SIZE - start);
+                    int written = channel.write(ByteBuffer.wrap(ring, start, length));
+                    if (head - from > RING_SIZE) { // the bytes were overwritten while sending, the stream is broken
+                        close();
+                        return;
+                    }
+                    cursor += written;
+                    if (written < length) break;
+                }
+                key.interestOps(cursor < end ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void discardInput() {
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            try {
+                if (channel.read(buffer) < 0) close();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void close() {
+            spectators.remove(this);
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (next != null) next.placeCard(card, slot);
+        synchronized (this) {
+            state.placeCard(card, slot);
+            append(Protocol.placeCard(card, slot));
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (next != null) next.removeCard(slot);
+        synchronized (this) {
+            state.removeCard(slot);
+            append(Protocol.slotMessage(Protocol.REMOVE_CARD, slot));
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (next != null) next.placeToken(player, slot);
+        synchronized (this) {
+            state.placeToken(player, slot);
+            append(Protocol.playerSlotMessage(Protocol.PLACE_TOKEN, player, slot));
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        if (next != null) next.removeTokens();
+        synchronized (this) {
+            state.removeTokens();
+            append(Protocol.removeAllTokens());
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (next != null) next.removeTokens(slot);
+        synchronized (this) {
+            state.removeTokens(slot);
+            append(Protocol.slotMessage(Protocol.REMOVE_TOKENS, slot));
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (next != null) next.removeToken(player, slot);
+        synchronized (this) {
+            state.removeToken(player, slot);
+            append(Protocol.playerSlotMessage(Protocol.REMOVE_TOKEN, player, slot));
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (next != null) next.setCountdown(millies, warn);
+        synchronized (this) {
+            ByteBuffer timer = Protocol.countdown(millies, warn);
+            state.setTimer(timer);
+            append(timer);
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (next != null) next.setElapsed(millies);
+        synchronized (this) {
+            ByteBuffer timer = Protocol.elapsed(millies);
+            state.setTimer(timer);
+            append(timer);
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (next != null) next.setFreeze(player, millies);
+        synchronized (this) {
+            state.setFreeze(player, millies);
+            append(Protocol.freeze(player, millies));
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (next != null) next.setScore(player, score);
+        synchronized (this) {
+            state.setScore(player, score);
+            append(Protocol.score(player, score));
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (next != null) next.announceWinner(players);
+        synchronized (this) {
+            state.announceWinner(players);
+            append(Protocol.winners(players));
+        }
+    }
+
+    /**
+     * Stops the selector thread and closes all the spectators' connections.
+     */
+    @Override
+    public void dispose() {
+        if (next != null) next.dispose();
+        terminate = true;
+        selector.wakeup();
+        try {
+            thread.joinWithLog();
+        } catch (InterruptedException ignored) {}
+    }
+}
@@ -0,0 +1,84 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncHandlerTest {
+
+    /**
+     * A handler that blocks writing until released.
+     */
+    static class SlowHandler extends Handler {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> written = new ArrayList<>();
+
+        @Override
+        public synchronized void publish(LogRecord record) {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+            written.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {}
+
+        @Override
+        public void close() {}
+    }
+
+    @Test
+    void publishDoesNotWaitForTheTarget() {
+        SlowHandler target = new SlowHandler();
+        AsyncHandler handler = new AsyncHandler(target, 2);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++)
+            handler.publish(new LogRecord(Level.SEVERE, "record " + i));
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+
+        target.release.countDown();
+        handler.close();
+        // one record is taken by the writer, two wait in the queue, the rest are dropped
+        assertEquals(5, target.written.size() + handler.dropped());
+        assertEquals("record 0", target.written.get(0));
+    }
+
+    @Test
+    void flushWaitsForTheWriterInOrder() {
+        List<String> written = new ArrayList<>();
+        Handler target = new Handler() {
+            @Override
+            public synchronized void publish(LogRecord record) {
+                written.add(Thread.currentThread().getName() + ": " + record.getMessage());
+            }
+
+            @Override
+            public void flush() {}
+
+            @Override
+            public void close() {}
+        };
+        AsyncHandler handler = new AsyncHandler(target, 100);
+
+        for (int i = 0; i < 50; i++)
+            handler.publish(new LogRecord(Level.SEVERE, "record " + i));
+        handler.flush();
+
+        synchronized (target) {
+            assertEquals(50, written.size());
+            for (int i = 0; i < 50; i++)
+                assertEquals("log-writer: record " + i, written.get(i));
+        }
+        handler.close();
+    }
+}
@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CardCatalogTest {
+
+    @Test
+    void features_DefaultDeck() {
+        CardCatalog catalog = new CardCatalog(4, 3);
+
+        assertEquals(81, catalog.deckSize);
+        // 34 = 1*27 + 0*9 + 2*3 + 1
+        assertEquals(1, catalog.feature(34, 0));
+        assertEquals(0, catalog.feature(34, 1));
+        assertEquals(2, catalog.feature(34, 2));
+        assertEquals(1, catalog.feature(34, 3));
+        assertEquals("cards/1021.png", catalog.imageName(34));
+        assertEquals("cards/0000.png", catalog.imageName(0));
+    }
+
+    @Test
+    void copyFeatures() {
+        CardCatalog catalog = new CardCatalog(4, 3);
+        int[] features = new int[6];
+
+        catalog.copyFeatures(80, features, 1);
+
+        assertEquals("[0, 2, 2, 2, 2, 0]", Arrays.toString(features));
+    }
+
+    @Test
+    void unsupportedDeck() {
+        assertThrows(IllegalArgumentException.class, () -> new CardCatalog(17, 3));
+    }
+}
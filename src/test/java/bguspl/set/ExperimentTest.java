@@ -0,0 +1,72 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExperimentTest {
+
+    @Test
+    void pointsCoverTheGrid() {
+        Properties grid = new Properties();
+        grid.setProperty("PenaltyFreezeSeconds", "1;3;5");
+        grid.setProperty("ComputerPlayers", "2;4");
+        grid.setProperty("PlayerKeys1", "81,87,69,82");  // a single value
+
+        List<Map<String, String>> points = Experiment.points(grid);
+
+        assertEquals(6, points.size());
+        assertEquals("2", points.get(0).get("ComputerPlayers"));
+        assertEquals("1", points.get(0).get("PenaltyFreezeSeconds"));
+        assertEquals("4", points.get(5).get("ComputerPlayers"));
+        assertEquals("5", points.get(5).get("PenaltyFreezeSeconds"));
+        assertTrue(points.stream().noneMatch(point -> point.containsKey("PlayerKeys1")));
+    }
+
+    @Test
+    void timedOutGamesAreOnlyCounted() {
+        Experiment.Result result = new Experiment.Result(new LinkedHashMap<>());
+        result.add(60, 10, 2, 3, false);
+        result.add(120, 30, 4, 5, false);
+        result.add(600, 1, 50, 0, true);
+
+        assertEquals(2, result.games);
+        assertEquals(1, result.timedOut);
+        assertEquals(90, result.meanGameSeconds(), 1e-9);
+        assertEquals(40 / 3.0, result.setsPerMinute(), 1e-9);
+        assertEquals(3, result.meanReshuffles(), 1e-9);
+        assertEquals(4, result.meanScoreSpread(), 1e-9);
+    }
+
+    @Test
+    void runsGrid() throws Exception {
+        Logger logger = Logger.getLogger("ExperimentTest");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        Properties grid = new Properties();
+        grid.setProperty("Games", "2");
+        grid.setProperty("MaxSeconds", "30");
+        grid.setProperty("ComputerPlayers", "2");
+        grid.setProperty("BotKeysPerSecond", "10");
+        grid.setProperty("BotAccuracy", "1");
+        grid.setProperty("PenaltyFreezeSeconds", "0;1");
+
+        List<Experiment.Result> results = Experiment.run(logger, grid);
+
+        assertEquals(2, results.size());
+        for (Experiment.Result result : results) {
+            assertEquals(2, result.games);
+            assertEquals(0, result.timedOut);
+            assertTrue(result.sets > 0);
+            assertTrue(result.meanGameSeconds() > 0);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameEventsTest {
+
+    @Test
+    void setSearchIsRecorded() throws Exception {
+        Logger logger = Logger.getLogger("GameEventsTest");
+        UtilImpl util = new UtilImpl(new Config(logger, new Properties()));
+        List<Integer> deck = IntStream.range(0, 81).boxed().collect(Collectors.toList());
+
+        Path file = Files.createTempFile("set-game", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(GameEvents.SetSearch.class).withThreshold(Duration.ZERO);
+            recording.start();
+            util.findSets(deck, 5);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("bguspl.set.SetSearch"))
+                    .collect(Collectors.toList());
+            assertEquals(1, events.size());
+            assertEquals(81, events.get(0).getInt("deckSize"));
+            assertEquals(5, events.get(0).getInt("found"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void disabledEventsAreNotRecorded() throws Exception {
+        Logger logger = Logger.getLogger("GameEventsTest");
+        UtilImpl util = new UtilImpl(new Config(logger, new Properties()));
+        List<Integer> deck = IntStream.range(0, 12).boxed().collect(Collectors.toList());
+
+        Path file = Files.createTempFile("set-game", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.disable(GameEvents.SetSearch.class);
+            recording.start();
+            util.findSets(deck, 1);
+            recording.stop();
+            recording.dump(file);
+
+            assertTrue(RecordingFile.readAllEvents(file).stream()
+                    .noneMatch(e -> e.getEventType().getName().equals("bguspl.set.SetSearch")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
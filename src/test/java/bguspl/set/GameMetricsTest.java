@@ -0,0 +1,56 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameMetricsTest {
+
+    @Test
+    void recordsClaimsAndTimings() {
+        GameMetrics metrics = new GameMetrics(2);
+        metrics.claimed();
+        metrics.claimed();
+        metrics.claimed();
+        metrics.claimChecked(true);
+        metrics.claimChecked(false);
+        metrics.claimChecked(false);
+        metrics.frozen(1, 3000);
+        metrics.setSearch(2_000);
+        metrics.setSearch(4_000);
+        metrics.watchActionQueue(1, () -> 2);
+
+        assertEquals(3, metrics.getClaims());
+        assertEquals(1.0 / 3, metrics.getAcceptedRatio(), 1e-9);
+        assertArrayEquals(new long[]{0, 3000}, metrics.getFreezeMillis());
+        assertEquals(3.0, metrics.getSetSearchMeanMicros(), 1e-9);
+        assertEquals(4, metrics.getSetSearchMaxMicros());
+        assertArrayEquals(new int[]{0, 2}, metrics.getActionQueueDepths());
+
+        metrics.reset();
+        assertEquals(0, metrics.getClaims());
+        assertEquals(0, metrics.getAcceptedRatio());
+        assertEquals(0, metrics.getSetSearchMaxMicros());
+    }
+
+    @Test
+    void exposedThroughJmx() throws Exception {
+        GameMetrics metrics = new GameMetrics(2);
+        metrics.watchClaimQueue(() -> 5);
+        metrics.reshuffled();
+        metrics.register(Logger.getLogger("GameMetricsTest"));
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(GameMetrics.OBJECT_NAME);
+        assertEquals(5, server.getAttribute(name, "ClaimQueueDepth"));
+        assertEquals(1L, server.getAttribute(name, "Reshuffles"));
+        server.invoke(name, "reset", null, null);
+        assertEquals(0L, metrics.getReshuffles());
+        server.unregisterMBean(name);
+    }
+}
@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 1_000_000; nanos++)
+            histogram.record(nanos * 1000);
+
+        assertEquals(1_000_000, histogram.count());
+        for (double percentile : new double[]{1, 50, 90, 99, 100}) {
+            double expected = percentile * 10_000_000;
+            long actual = histogram.percentile(percentile);
+            assertTrue(actual >= expected && actual <= expected * (1 + 1.0 / 16), percentile + ": " + actual);
+        }
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+        LatencyHistogram other = new LatencyHistogram();
+        other.record(-5);
+        histogram.add(other);
+
+        assertEquals(3, histogram.count());
+        assertEquals(0, histogram.percentile(30));
+        assertEquals(3, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(100));
+        histogram.reset();
+        assertEquals(0, histogram.percentile(50));
+    }
+}
@@ -0,0 +1,41 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadTestTest {
+
+    @Test
+    void runsScenario() throws InterruptedException {
+        Logger logger = Logger.getLogger("LoadTestTest");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        Properties scenario = new Properties();
+        scenario.setProperty("Games", "2");
+        scenario.setProperty("Seconds", "2");
+        scenario.setProperty("ComputerPlayers", "3");
+        scenario.setProperty("BotKeysPerSecond", "200");
+        scenario.setProperty("BotAccuracy", "1");
+        scenario.setProperty("TableDelaySeconds", "0");
+
+        List<LoadTest.Result> results = LoadTest.runScenario(logger, "smoke", scenario);
+
+        assertEquals(3, results.size());
+        LoadTest.Result total = results.get(2);
+        assertEquals("all", total.game);
+        assertFalse(total.hung);
+        assertTrue(total.sets > 0);
+        assertTrue(total.actions >= total.claims);
+        assertEquals(total.sets + total.rejected, results.get(0).sets + results.get(0).rejected
+                + results.get(1).sets + results.get(1).rejected);
+        assertTrue(total.latency.count() > 0);
+    }
+}
@@ -0,0 +1,100 @@
+package bguspl.set;
+
+import bguspl.set.UserInterfaceComposite.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserInterfaceCompositeTest {
+
+    @Mock
+    UserInterface fast;
+
+    private final Logger logger = Logger.getLogger("UserInterfaceCompositeTest");
+
+    /**
+     * A sink that blocks on its first event until released.
+     */
+    private static class StuckSink extends UserInterfaceDecorator {
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        StuckSink(Logger logger) {
+            super(logger, new UtilImpl(new Config(logger, new Properties())), null);
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {}
+        }
+    }
+
+    @Test
+    void eventsReachEverySinkInOrder() {
+        UserInterfaceComposite composite = new UserInterfaceComposite(logger, 16, OverflowPolicy.BLOCK);
+        composite.add("fast", fast);
+
+        for (int i = 0; i < 100; i++)
+            composite.placeCard(i, i % 12);
+        composite.setScore(1, 5);
+        composite.dispose();
+
+        InOrder inOrder = inOrder(fast);
+        for (int i = 0; i < 100; i++)
+            inOrder.verify(fast).placeCard(i, i % 12);
+        inOrder.verify(fast).setScore(1, 5);
+        inOrder.verify(fast).dispose();
+        assertEquals(0, composite.dropped());
+    }
+
+    @Test
+    void stuckSinkDoesNotStallTheGame() {
+        StuckSink stuck = new StuckSink(logger);
+        UserInterfaceComposite composite = new UserInterfaceComposite(logger, 4, OverflowPolicy.DROP_OLDEST);
+        composite.add("stuck", stuck);
+        composite.add("fast", fast, OverflowPolicy.BLOCK);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++)
+                composite.placeCard(i, 0);
+        });
+        stuck.release.countDown();
+        composite.dispose();
+
+        verify(fast, times(100)).placeCard(anyInt(), eq(0));
+        verify(fast).dispose();
+        assertTrue(composite.dropped() >= 100 - 4 - 1);
+    }
+
+    @Test
+    void dropNewestKeepsTheQueuedEvents() {
+        StuckSink stuck = spy(new StuckSink(logger));
+        UserInterfaceComposite composite = new UserInterfaceComposite(logger, 2, OverflowPolicy.DROP_NEWEST);
+        composite.add("stuck", stuck);
+
+        composite.placeCard(0, 0);
+        verify(stuck, timeout(5000)).placeCard(0, 0);
+        for (int i = 1; i < 10; i++)
+            composite.placeCard(i, 0);
+        stuck.release.countDown();
+        composite.dispose();
+
+        verify(stuck).placeCard(1, 0);
+        verify(stuck).placeCard(2, 0);
+        verify(stuck, never()).placeCard(3, 0);
+        assertEquals(7, composite.dropped());
+    }
+}
@@ -0,0 +1,92 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    private static UtilImpl util(int featureCount, int featureSize) {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("PlayerKeys1", "");
+        properties.put("PlayerKeys2", "");
+        Logger logger = Logger.getLogger("UtilImplTest");
+        return new UtilImpl(new Config(logger, properties));
+    }
+
+    private static List<Integer> fullDeck(int deckSize) {
+        return IntStream.range(0, deckSize).boxed().collect(Collectors.toList());
+    }
+
+    @Test
+    void findSets_DefaultDeck() {
+        UtilImpl util = util(4, 3);
+
+        List<int[]> sets = util.findSets(fullDeck(81), Integer.MAX_VALUE);
+
+        // every pair of cards is completed by exactly one card: 81 * 80 / 3!
+        assertEquals(1080, sets.size());
+        sets.forEach(set -> assertTrue(util.testSet(set)));
+    }
+
+    @Test
+    void findSets_LargeVariant() {
+        UtilImpl util = util(6, 3);
+
+        assertEquals(729 * 728 / 6, util.findSets(fullDeck(729), Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void findSets_FeatureSizeFour() {
+        UtilImpl util = util(3, 4);
+
+        List<int[]> sets = util.findSets(fullDeck(64), Integer.MAX_VALUE);
+
+        // per feature there are 4 + 4 * 3 * 2 ordered valid triples, minus triples of the same card, over 4! orders
+        assertEquals((28 * 28 * 28 - 64) / 24, sets.size());
+        sets.forEach(set -> assertTrue(util.testSet(set)));
+    }
+
+    @Test
+    void findSets_Count() {
+        UtilImpl util = util(4, 3);
+
+        assertEquals(1, util.findSets(fullDeck(81), 1).size());
+        assertEquals(0, util.findSets(fullDeck(2), 1).size());
+    }
+
+    @Test
+    void findAllSets_SameAsSequential() {
+        UtilImpl util = util(6, 3);
+        List<Integer> deck = fullDeck(729);
+
+        List<String> parallel = util.findAllSets(deck).stream().map(Arrays::toString).sorted().collect(Collectors.toList());
+        List<String> sequential = util.findSets(deck, Integer.MAX_VALUE).stream().map(Arrays::toString).sorted().collect(Collectors.toList());
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void streamSets_CountSets_HasSet() {
+        UtilImpl util = util(4, 3);
+        List<Integer> deck = fullDeck(81);
+
+        assertEquals(1080, util.countSets(deck));
+        assertEquals(1080, util.streamSets(deck).count());
+        assertEquals(5, util.streamSets(deck).limit(5).filter(util::testSet).count());
+        assertTrue(util.hasSet(deck));
+        assertFalse(util.hasSet(fullDeck(2)));
+        assertEquals(0, util.countSets(fullDeck(2)));
+    }
+}
@@ -0,0 +1,65 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VirtualClockTest {
+
+    @Test
+    void sleepsEndInOrderWithoutWaiting() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(0);
+        AtomicLong turnEnd = new AtomicLong();
+        AtomicLong penaltyEnd = new AtomicLong();
+        Thread turn = sleeper(clock, 60000, turnEnd);
+        Thread penalty = sleeper(clock, 3000, penaltyEnd);
+
+        long start = System.nanoTime();
+        turn.start();
+        penalty.start();
+        turn.join(5000);
+        penalty.join(5000);
+
+        assertFalse(turn.isAlive() || penalty.isAlive());
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertEquals(3000, penaltyEnd.get());
+        assertEquals(60000, turnEnd.get());
+    }
+
+    @Test
+    void timeStandsStillWhileAThreadWorks() throws InterruptedException {
+        VirtualClock clock = new VirtualClock(0);
+        AtomicLong end = new AtomicLong();
+        clock.enter();  // the working thread (this one)
+        Thread sleeper = sleeper(clock, 1000, end);
+        sleeper.start();
+
+        Thread.sleep(100);
+        assertEquals(0, clock.currentTimeMillis());
+        assertTrue(sleeper.isAlive());
+
+        clock.idle();  // e.g. waiting for the sleeper
+        sleeper.join(5000);
+        assertFalse(sleeper.isAlive());
+        assertEquals(1000, end.get());
+        clock.busy();
+        clock.exit();
+    }
+
+    private static Thread sleeper(VirtualClock clock, long millis, AtomicLong end) {
+        clock.enter();
+        return new Thread(() -> {
+            try {
+                clock.sleep(millis);
+                end.set(clock.currentTimeMillis());
+            } catch (InterruptedException ignored) {
+            } finally {
+                clock.exit();
+            }
+        });
+    }
+}
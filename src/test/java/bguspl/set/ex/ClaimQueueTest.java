@@ -0,0 +1,110 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimQueueTest {
+
+    @Test
+    void pollSkipsCancelledClaims() {
+        ClaimQueue queue = new ClaimQueue(4);
+        Claim first = new Claim(2);
+        Claim second = new Claim(0);
+        Claim third = new Claim(3);
+        queue.add(first);
+        queue.add(second);
+        queue.add(third);
+        assertEquals(3, queue.size());
+
+        assertSame(second, queue.remove(0));
+        assertFalse(queue.contains(0));
+        assertNull(queue.remove(0));
+        assertEquals(2, queue.size());
+
+        Claim again = new Claim(0);  // claimed again after the cancellation: goes to the end of the line
+        queue.add(again);
+
+        assertSame(first, queue.poll());
+        assertSame(third, queue.poll());
+        assertSame(again, queue.poll());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void clearCancelsAll() {
+        ClaimQueue queue = new ClaimQueue(3);
+        queue.add(new Claim(1));
+        queue.add(new Claim(2));
+
+        List<Claim> cancelled = queue.clear();
+
+        assertEquals(2, cancelled.size());
+        assertTrue(cancelled.stream().noneMatch(claim -> queue.contains(claim.player)));
+        assertEquals(0, queue.size());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void clearDoesNotLoseConcurrentClaims() throws InterruptedException {
+        ClaimQueue queue = new ClaimQueue(4);
+        Thread clearer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) queue.clear();
+        });
+        clearer.start();
+        try {
+            for (int round = 0; round < 100000; round++)
+                for (int player = 0; player < 4; player++)
+                    if (!queue.contains(player)) queue.add(new Claim(player));
+        } finally {
+            clearer.interrupt();
+            clearer.join();
+        }
+
+        int pending = queue.size();
+        int polled = 0;
+        while (queue.poll() != null) polled++;
+        assertEquals(pending, polled);  // every claim left pending reaches the dealer
+        for (int player = 0; player < 4; player++)
+            assertFalse(queue.contains(player));
+    }
+
+    @Test
+    void pollTakesEveryClaimOnceUnderConcurrentClaims() throws InterruptedException {
+        int players = 4;
+        int rounds = 20000;
+        ClaimQueue queue = new ClaimQueue(players);
+        AtomicInteger cancelled = new AtomicInteger();
+        Thread[] threads = new Thread[players];
+        for (int player = 0; player < players; player++) {
+            int id = player;
+            threads[player] = new Thread(() -> {
+                for (int round = 0; round < rounds; round++) {
+                    queue.add(new Claim(id));
+                    if (round % 3 == 0 && queue.remove(id) != null) cancelled.incrementAndGet();
+                    while (queue.contains(id)) Thread.yield();  // wait for the dealer, like a player does
+                }
+            });
+            threads[player].start();
+        }
+
+        int polled = 0;
+        while (polled + cancelled.get() < players * rounds)
+            if (queue.poll() != null) polled++;
+            else Thread.yield();
+        for (Thread thread : threads)
+            thread.join();
+
+        assertEquals(players * rounds, polled + cancelled.get());
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,42 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClaimTest {
+
+    @Test
+    void completeWakesOwner() throws InterruptedException {
+        Claim claim = new Claim(3);
+        AtomicReference<Verdict> verdict = new AtomicReference<>();
+        Thread owner = new Thread(() -> {
+            try {
+                verdict.set(claim.await());
+            } catch (InterruptedException ignored) {}
+        });
+        owner.start();
+
+        assertTrue(claim.complete(Verdict.ILLEGAL));
+        owner.join(5000);
+
+        assertFalse(owner.isAlive());
+        assertEquals(Verdict.ILLEGAL, verdict.get());
+    }
+
+    @Test
+    void onlyFirstVerdictCounts() throws InterruptedException {
+        Claim claim = new Claim(0);
+        assertFalse(claim.isDone());
+
+        assertTrue(claim.complete(Verdict.NONE));
+        assertFalse(claim.complete(Verdict.LEGAL));
+
+        assertTrue(claim.isDone());
+        assertEquals(Verdict.NONE, claim.await());
+    }
+}
@@ -0,0 +1,73 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DealStrategyTest {
+
+    UtilImpl util;
+    List<Integer> table;
+    List<Integer> deck;
+
+    @BeforeEach
+    void setUp() {
+        util = new UtilImpl(new Config(Logger.getLogger("DealStrategyTest"), new Properties()));
+
+        // a table of 9 cards with no set, built greedily from a shuffled deck
+        deck = IntStream.range(0, 81).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck);
+        table = new ArrayList<>();
+        for (Integer card : new ArrayList<>(deck)) {
+            if (table.size() == 9) break;
+            table.add(card);
+            if (util.hasSet(table)) table.remove(card);
+            else deck.remove(card);
+        }
+        assertEquals(9, table.size());
+        assertFalse(util.hasSet(table));
+    }
+
+    @RepeatedTest(20)
+    void guaranteesSet() {
+        List<Integer> chosen = new SetGuaranteeingDealStrategy(util).choose(table, deck, 3);
+
+        assertEquals(3, chosen.size());
+        assertEquals(3, new HashSet<>(chosen).size());
+        assertTrue(deck.containsAll(chosen));
+        List<Integer> dealt = new ArrayList<>(table);
+        dealt.addAll(chosen);
+        assertTrue(util.hasSet(dealt));
+    }
+
+    @Test
+    void guaranteesSetOnEmptyTable() {
+        List<Integer> chosen = new SetGuaranteeingDealStrategy(util).choose(new ArrayList<>(), deck, 12);
+
+        assertEquals(12, new HashSet<>(chosen).size());
+        assertTrue(util.hasSet(chosen));
+    }
+
+    @Test
+    void randomChoosesDistinctDeckCards() {
+        List<Integer> chosen = new RandomDealStrategy().choose(table, deck, deck.size());
+
+        assertEquals(new HashSet<>(deck), new HashSet<>(chosen));
+        assertEquals(deck.size(), chosen.size());
+    }
+}
@@ -4,15 +4,21 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
 import java.util.logging.Logger;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 @ExtendWith(MockitoExtension.class)
 class DealerTest {
@@ -48,7 +54,7 @@ class DealerTest {
     @Test
     void addToQueue() {
 
-        int idToBeChecked = 999 ;
+        int idToBeChecked = 1 ;
         boolean expectedPreVal = false ;
 
         // check the pre condition
@@ -63,4 +69,105 @@ class DealerTest {
         assertEquals(expectedPostVal, dealer.setsToCheck.contains(idToBeChecked));
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void replaceCardsForSet() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+        Util realUtil = new UtilImpl(config);
+        Env env = new Env(logger, config, ui, realUtil);
+        Table realTable = new Table(env);
+        Player[] somePlayers = new Player[1];
+        dealer = new Dealer(env, realTable, somePlayers);
+        somePlayers[0] = new Player(env, dealer, realTable, 0, true);
+        dealer.dealCards();
+
+        // the player has a token on every card
+        long[] versions = new long[config.tableSize];
+        for (int slot = 0; slot < config.tableSize; slot++) {
+            realTable.placeToken(0, slot);
+            versions[slot] = realTable.version(slot);
+        }
+        Integer[] before = Arrays.copyOf(realTable.slotToCard, config.tableSize);
+
+        assertTrue(dealer.replaceCardsForSet());
+
+        int replaced = 0;
+        for (int slot = 0; slot < config.tableSize; slot++) {
+            boolean same = before[slot].equals(realTable.slotToCard[slot]);
+            if (!same) ++replaced;
+            assertEquals(same, realTable.getToken()[slot].contains(0));
+            assertEquals(same, versions[slot] == realTable.version(slot));
+        }
+        assertTrue(replaced >= 1 && replaced <= config.featureSize);
+        List<Integer> cards = Arrays.asList(realTable.slotToCard);
+        assertTrue(realUtil.hasSet(cards));
+        assertEquals(config.deckSize, dealer.getSizeOfDeck() + cards.size());
+    }
+
+    @Test
+    void claimToVerdictDoesNotAllocate() throws InterruptedException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        properties.put("DealStrategy", "SetGuaranteeing");
+        Config config = new Config(logger, properties);
+        Util realUtil = new UtilImpl(config);
+        Env env = new Env(logger, config, ui, realUtil);
+        Table realTable = new Table(env);
+        dealer = new Dealer(env, realTable, new Player[0]);
+        dealer.dealCards();
+
+        TableSnapshot board = realTable.snapshot();
+        List<int[]> sets = realUtil.findSets(Arrays.asList(Arrays.stream(board.cards()).boxed().toArray(Integer[]::new)), 1);
+        Claim legal = claimOf(board, Arrays.stream(sets.get(0)).map(board::slot).toArray());
+        Claim illegal = null;
+        for (int slot = 2; illegal == null; slot++) {
+            int[] slots = {0, 1, slot};
+            int[] cards = {board.card(0), board.card(1), board.card(slot)};
+            if (!realUtil.testSet(cards)) illegal = claimOf(board, slots);
+        }
+        Claim stale = claimOf(board, new int[]{0, 1, 2}, 1);
+        stale.versions[2] = -1;  // a card of the set was replaced since
+        assertEquals(Verdict.LEGAL, dealer.verify(legal));
+        assertEquals(Verdict.ILLEGAL, dealer.verify(illegal));
+
+        for (int i = 0; i < 100000; i++)  // warm up
+            claimAndCheck(legal, illegal, stale);
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100000; i++)
+            claimAndCheck(legal, illegal, stale);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(allocated < 1024, "checking 300000 claims allocated " + allocated + " bytes");
+        assertEquals(Verdict.ILLEGAL, illegal.await());
+        assertEquals(Verdict.NONE, stale.await());
+    }
+
+    /**
+     * Verifies a legal claim (without taking it, that would change the table), and queues an illegal and a stale
+     * claim (the claims are reused, as players do) and checks them.
+     */
+    private void claimAndCheck(Claim legal, Claim illegal, Claim stale) {
+        dealer.verify(legal);
+        dealer.addToQueue(illegal);
+        dealer.addToQueue(stale);
+        dealer.checkForSets();
+    }
+
+    private static Claim claimOf(TableSnapshot board, int[] slots) {
+        return claimOf(board, slots, 0);
+    }
+
+    private static Claim claimOf(TableSnapshot board, int[] slots, int player) {
+        long[] versions = new long[slots.length];
+        for (int i = 0; i < slots.length; i++)
+            versions[i] = board.version(slots[i]);
+        return new Claim(player, slots, versions);
+    }
+}
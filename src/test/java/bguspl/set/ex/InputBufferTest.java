@@ -0,0 +1,133 @@
+package bguspl.set.ex;
+
+import bguspl.set.Clock;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputBufferTest {
+
+    @Test
+    void coalescesAndDrops() {
+        InputBuffer buffer = new InputBuffer(3);
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(4));  // already waiting
+        assertTrue(buffer.offer(7));
+        assertTrue(buffer.offer(1));
+        assertFalse(buffer.offer(2));  // full
+
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.dropped());
+        assertEquals(4, (int) buffer.poll());
+        assertEquals(7, (int) buffer.poll());
+        assertEquals(1, (int) buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void concurrentPressesOfAKeyAreCoalesced() throws InterruptedException {
+        for (int round = 0; round < 1000; round++) {
+            InputBuffer buffer = new InputBuffer(3);
+            Thread[] pressers = new Thread[4];
+            for (int i = 0; i < pressers.length; i++) {
+                pressers[i] = new Thread(() -> buffer.offer(6));
+                pressers[i].start();
+            }
+            for (Thread presser : pressers)
+                presser.join();
+
+            assertEquals(1, buffer.size());
+            assertEquals(3, buffer.dropped());
+        }
+    }
+
+    @Test
+    void awaitWakesOnKeyAndOnClose() throws InterruptedException {
+        InputBuffer buffer = new InputBuffer(3);
+        int[] taken = {-1};
+        Thread consumer = new Thread(() -> {
+            Integer slot;
+            while ((slot = buffer.poll()) == null)
+                buffer.await();
+            taken[0] = slot;
+            buffer.await();  // returns once closed
+        });
+        consumer.start();
+
+        Thread.sleep(50);
+        buffer.offer(5);
+        Thread.sleep(50);
+        buffer.close();
+        consumer.join(5000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(5, taken[0]);
+    }
+
+    /**
+     * Counts the consumer's idle and busy calls, which must alternate.
+     */
+    static class PairingClock implements Clock {
+        final AtomicInteger idle = new AtomicInteger();
+        final AtomicInteger unpaired = new AtomicInteger();
+
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedException {
+            Thread.sleep(millis);
+        }
+
+        @Override
+        public void yieldTime() {}
+
+        @Override
+        public void enter() {}
+
+        @Override
+        public void exit() {}
+
+        @Override
+        public void idle() {
+            if (idle.incrementAndGet() != 1) unpaired.incrementAndGet();
+        }
+
+        @Override
+        public void busy() {
+            if (idle.decrementAndGet() != 0) unpaired.incrementAndGet();
+        }
+    }
+
+    @Test
+    void awaitPairsIdleAndBusy() throws InterruptedException {
+        PairingClock clock = new PairingClock();
+        InputBuffer buffer = new InputBuffer(3, clock);
+        int presses = 20000;
+        Thread consumer = new Thread(() -> {
+            for (int taken = 0; taken < presses; ) {
+                if (buffer.poll() != null) ++taken;
+                else buffer.await();
+            }
+        });
+        consumer.start();
+
+        for (int i = 0; i < presses; ) {
+            if (buffer.offer(i % 12)) ++i;
+            else Thread.yield();
+        }
+        consumer.join(10000);
+
+        assertFalse(consumer.isAlive());
+        assertEquals(0, clock.unpaired.get());
+        assertEquals(0, clock.idle.get());
+    }
+}
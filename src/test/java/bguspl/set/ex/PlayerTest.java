@@ -82,7 +82,7 @@ class PlayerTest {
     }
     @Test
     void checkIfSetWasCorrect() {
-        int expectedValue = 0;
+        Verdict expectedValue = Verdict.NONE;
 
         // call the method we are testing
         player.checkIfSetWasCorrect();
@@ -135,6 +135,54 @@ class TableTest {
         removeSomeTokensAndAssert();
     }
 
+    @Test
+    void snapshot_UnchangedByLaterChanges() throws InterruptedException {
+        table.placeCard(3, 1);
+        TableSnapshot before = table.snapshot();
+
+        table.placeCard(8, 2);
+        table.removeCard(1);
+        TableSnapshot after = table.snapshot();
+
+        assertEquals(3, before.card(1));
+        assertEquals(TableSnapshot.NONE, before.card(2));
+        assertEquals(1, before.countCards());
+        assertEquals(TableSnapshot.NONE, after.card(1));
+        assertEquals(2, after.slot(8));
+        assertEquals(1, after.countCards());
+        assertEquals(true, after.version > before.version);
+    }
+
+    @Test
+    void isCurrent_StaleAfterCardReplaced() throws InterruptedException {
+        fillAllSlots();
+        int[] slots = {0, 1, 2};
+        long[] versions = {table.version(0), table.version(1), table.version(2)};
+        assertEquals(true, table.isCurrent(slots, versions));
+
+        table.removeCard(1);
+        assertEquals(false, table.isCurrent(slots, versions));
+
+        table.placeCard(1, 1);  // the same card again is still a different version
+        assertEquals(false, table.isCurrent(slots, versions));
+        versions[1] = table.version(1);
+        assertEquals(true, table.isCurrent(slots, versions));
+    }
+
+    @Test
+    void placeToken_RejectedAtStaleVersion() throws InterruptedException {
+        table.placeCard(3, 1);
+        long version = table.version(1);
+
+        table.removeCard(1);
+        assertEquals(false, table.placeToken(0, 1, version));  // the slot is empty
+        table.placeCard(4, 1);
+        assertEquals(false, table.placeToken(0, 1, version));  // another card
+        assertEquals(true, !table.getToken()[1].contains(0));
+
+        assertEquals(true, table.placeToken(0, 1, table.version(1)));
+        assertEquals(true, table.getToken()[1].contains(0));
+    }
 
     static class MockUserInterface implements UserInterface {
         @Override
@@ -0,0 +1,156 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class GameServerTest {
+
+    GameServer server;
+    @Mock
+    private Player player;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "1");
+        server = new GameServer(logger, new Config(logger, properties), new Player[]{player, null}, 0, null);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.dispose();
+    }
+
+    private static ByteBuffer read(SocketChannel channel, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining())
+            channel.read(buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer read(SocketChannel channel, byte opcode) throws IOException {
+        ByteBuffer message = read(channel, Protocol.messageSize(opcode));
+        assertEquals(opcode, message.get());
+        return message;
+    }
+
+    /**
+     * Connects to the server and reads the snapshot of a game that did not start yet.
+     */
+    private SocketChannel connect() throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.port()));
+        read(channel, Protocol.RESYNC);
+        read(channel, Protocol.SCORE);
+        read(channel, Protocol.SCORE);
+        return channel;
+    }
+
+    @Test
+    void joinAndPressKey() throws IOException {
+        try (SocketChannel channel = connect()) {
+            channel.write(Protocol.clientMessage(Protocol.JOIN, 0));
+            channel.write(Protocol.clientMessage(Protocol.KEY, 5));
+
+            assertEquals(0, read(channel, Protocol.JOINED).getShort());
+            verify(player, timeout(1000)).keyPressed(5);
+        }
+    }
+
+    @Test
+    void joinAsComputerPlayerIsRejected() throws IOException {
+        try (SocketChannel channel = connect()) {
+            channel.write(Protocol.clientMessage(Protocol.JOIN, 1));
+
+            assertEquals(1, read(channel, Protocol.REJECTED).getShort());
+        }
+    }
+
+    @Test
+    void connectSendsSnapshot() throws IOException {
+        server.placeCard(42, 7);
+        server.placeToken(0, 7);
+        server.setScore(1, 3);
+
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.port()))) {
+            read(channel, Protocol.RESYNC);
+            ByteBuffer card = read(channel, Protocol.PLACE_CARD);
+            assertEquals(42, card.getInt());
+            assertEquals(7, card.getShort());
+            ByteBuffer token = read(channel, Protocol.PLACE_TOKEN);
+            assertEquals(0, token.getShort());
+            assertEquals(7, token.getShort());
+            assertEquals(0, read(channel, Protocol.SCORE).getShort());
+            ByteBuffer score = read(channel, Protocol.SCORE);
+            assertEquals(1, score.getShort());
+            assertEquals(3, score.getInt());
+        }
+    }
+
+    @Test
+    void playerIsControlledByOneConnection() throws IOException, InterruptedException {
+        try (SocketChannel first = connect(); SocketChannel second = connect()) {
+            first.write(Protocol.clientMessage(Protocol.JOIN, 0));
+            read(first, Protocol.JOINED);
+
+            second.write(Protocol.clientMessage(Protocol.JOIN, 0));
+            read(second, Protocol.REJECTED);
+
+            first.close();
+            byte reply;
+            do { // until the server sees the first connection closed
+                Thread.sleep(10);
+                second.write(Protocol.clientMessage(Protocol.JOIN, 0));
+                reply = read(second, 3).get();
+            } while (reply == Protocol.REJECTED);
+            assertEquals(Protocol.JOINED, reply);
+        }
+    }
+
+    @Test
+    void uiEventsAreBroadcast() throws IOException {
+        try (SocketChannel channel = connect()) {
+            server.placeCard(42, 7);
+            server.setScore(0, 3);
+
+            ByteBuffer placeCard = read(channel, Protocol.PLACE_CARD);
+            assertEquals(42, placeCard.getInt());
+            assertEquals(7, placeCard.getShort());
+            ByteBuffer score = read(channel, Protocol.SCORE);
+            assertEquals(0, score.getShort());
+            assertEquals(3, score.getInt());
+        }
+    }
+
+    @Test
+    void manyConnections() throws IOException {
+        LoadClient client = new LoadClient(new InetSocketAddress("localhost", server.port()), 500, 1500, 2, 1, 12);
+
+        client.run();
+
+        assertEquals(500, client.connected());
+        assertEquals(1, client.joined());
+    }
+}
@@ -0,0 +1,85 @@
+package bguspl.set.net;
+
+import bguspl.set.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpectatorChannelTest {
+
+    SpectatorChannel channel;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Logger logger = Logger.getLogger("SpectatorChannelTest");
+        logger.setUseParentHandlers(false);
+        channel = new SpectatorChannel(logger, new Config(logger, new Properties()), 0, null);
+        channel.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.dispose();
+    }
+
+    private SocketChannel subscribe() throws IOException {
+        return SocketChannel.open(new InetSocketAddress("localhost", channel.port()));
+    }
+
+    private static ByteBuffer read(SocketChannel spectator, byte opcode) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Protocol.messageSize(opcode));
+        while (buffer.hasRemaining())
+            spectator.read(buffer);
+        buffer.flip();
+        assertEquals(opcode, buffer.get());
+        return buffer;
+    }
+
+    @Test
+    void snapshotOnSubscribe() throws IOException {
+        channel.placeCard(42, 3);
+        channel.placeToken(1, 3);
+        channel.placeCard(7, 4);
+        channel.removeCard(4);
+
+        try (SocketChannel spectator = subscribe()) {
+            read(spectator, Protocol.RESYNC);
+            ByteBuffer card = read(spectator, Protocol.PLACE_CARD);
+            assertEquals(42, card.getInt());
+            assertEquals(3, card.getShort());
+            ByteBuffer token = read(spectator, Protocol.PLACE_TOKEN);
+            assertEquals(1, token.getShort());
+            assertEquals(3, token.getShort());
+            read(spectator, Protocol.SCORE);
+            read(spectator, Protocol.SCORE);
+        }
+    }
+
+    @Test
+    void deltasAreSentToAllSpectators() throws IOException {
+        try (SocketChannel first = subscribe(); SocketChannel second = subscribe()) {
+            for (SocketChannel spectator : new SocketChannel[]{first, second}) {
+                read(spectator, Protocol.RESYNC);
+                read(spectator, Protocol.SCORE);
+                read(spectator, Protocol.SCORE);
+            }
+
+            channel.setScore(1, 5);
+
+            for (SocketChannel spectator : new SocketChannel[]{first, second}) {
+                ByteBuffer score = read(spectator, Protocol.SCORE);
+                assertEquals(1, score.getShort());
+                assertEquals(5, score.getInt());
+            }
+        }
+    }
+}